@@ -0,0 +1,68 @@
+#!/usr/bin/env bash
+# Time to first ready request and resident memory for each startup mode.
+#
+# Usage: scripts/startup-benchmark.sh <startup-dir> [runs]
+#
+# <startup-dir> is the layout built by `./gradlew cdsArchive`: app.jar, lib/, app.jsa and
+# app-aot.jsa. The native binary is benchmarked too when `./gradlew nativeCompile` has
+# produced it. Time is measured from launch until /actuator/health/readiness answers 200,
+# which is when Kubernetes starts routing traffic; RSS is read right after. Extra JVM
+# options go in JAVA_OPTS and application arguments in APP_ARGS, for example
+# APP_ARGS="--users.repository.backend=memory" when no database is reachable. The CDS modes
+# need the JDK the archives were trained with; JAVA_HOME picks it when set.
+set -euo pipefail
+
+dir=${1:?usage: $0 <startup-dir> [runs]}
+runs=${2:-5}
+port=${PORT:-18080}
+native=${NATIVE_IMAGE:-build/native/nativeCompile/webflux-course}
+java=${JAVA_HOME:+$JAVA_HOME/bin/}java
+read -r -a java_opts <<< "${JAVA_OPTS:-}"
+read -r -a app_args <<< "${APP_ARGS:-}"
+
+declare -A modes=(
+  [jvm]="$java ${java_opts[*]} -jar $dir/app.jar"
+  [aot]="$java ${java_opts[*]} -Dspring.aot.enabled=true -jar $dir/app.jar"
+  [cds]="$java ${java_opts[*]} -XX:SharedArchiveFile=$dir/app.jsa -jar $dir/app.jar"
+  [aot+cds]="$java ${java_opts[*]} -Dspring.aot.enabled=true -XX:SharedArchiveFile=$dir/app-aot.jsa -jar $dir/app.jar"
+)
+order=(jvm aot cds aot+cds)
+if [[ -x $native ]]; then
+  modes[native]="$native"
+  order+=(native)
+fi
+
+median() {
+  sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+run_once() {
+  local start pid elapsed rss
+  start=$(date +%s%N)
+  # shellcheck disable=SC2086
+  ${modes[$1]} --server.port="$port" "${app_args[@]}" > "$dir/benchmark-$1.log" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null "http://localhost:$port/actuator/health/readiness"; do
+    if ! kill -0 "$pid" 2> /dev/null; then
+      echo "$1 exited before becoming ready, see $dir/benchmark-$1.log" >&2
+      return 1
+    fi
+    sleep 0.02
+  done
+  elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+  rss=$(awk '/VmRSS/ { print int($2 / 1024) }' "/proc/$pid/status")
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+  echo "$elapsed $rss"
+}
+
+printf '%-8s %18s %12s\n' mode "ready (ms, p50)" "rss (MB)"
+for mode in "${order[@]}"; do
+  results=()
+  for _ in $(seq "$runs"); do
+    results+=("$(run_once "$mode")")
+  done
+  ready=$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)
+  rss=$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)
+  printf '%-8s %18s %12s\n' "$mode" "$ready" "$rss"
+done
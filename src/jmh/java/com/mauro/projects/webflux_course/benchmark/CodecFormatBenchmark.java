@@ -0,0 +1,93 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the user payloads in each negotiated format, with mappers built
+ * the way CodecConfig builds them. Payload sizes are printed once per fork at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private final UserResponse response = new UserResponse("65f1c0ffee0000000000abcd", "Mauro Vidal", "mauro@mail.com");
+    private final List<UserResponse> page = page(100);
+    private byte[] request;
+    private byte[] encodedPage;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json().factory(factory(format)).build();
+        request = mapper.writeValueAsBytes(new UserRequest("Mauro Vidal", "mauro@mail.com", "secret"));
+        encodedPage = mapper.writeValueAsBytes(page);
+
+        System.out.printf("%s: response %d bytes, request %d bytes, 100 responses %d bytes%n",
+                format, mapper.writeValueAsBytes(response).length, request.length, encodedPage.length);
+    }
+
+    @Benchmark
+    public byte[] writeUserResponse() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public UserRequest readUserRequest() throws IOException {
+        return mapper.readValue(request, UserRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeHundredUserResponses() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public UserResponse[] readHundredUserResponses() throws IOException {
+        return mapper.readValue(encodedPage, UserResponse[].class);
+    }
+
+    private static JsonFactory factory(final String format) {
+        return switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+    }
+
+    private static List<UserResponse> page(final int size) {
+        final List<UserResponse> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new UserResponse(String.format("65f1c0ffee0000000000%04x", i), "User " + i, "user" + i + "@mail.com"));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,106 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.mauro.projects.webflux_course.controller.UserExport;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.mapper.UserMapperImpl;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a whole collection to pooled Netty buffers the way /users/all does (UserResponse
+ * through the Jackson encoder) and the way /users/export does, releasing each buffer as soon
+ * as it is produced like the server would after writing it. Returns the bytes written.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    private static final ResolvableType RESPONSE_TYPE = ResolvableType.forClass(UserResponse.class);
+
+    @Param("1000000")
+    private int users;
+
+    private final DataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private final Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(Jackson2ObjectMapperBuilder.json().build());
+    private final UserMapper mapper = new UserMapperImpl();
+
+    private List<User> collection;
+
+    @Setup
+    public void setUp() {
+        collection = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            collection.add(User.builder()
+                    .id(new ObjectId().toHexString())
+                    .name("User " + i)
+                    .email("user" + i + "@mail.com")
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public long allAsJson() {
+        return drain(encoder.encode(responses(), bufferFactory, RESPONSE_TYPE, MediaType.APPLICATION_JSON, Map.of()));
+    }
+
+    @Benchmark
+    public long allAsNdjson() {
+        return drain(encoder.encode(responses(), bufferFactory, RESPONSE_TYPE, MediaType.APPLICATION_NDJSON, Map.of()));
+    }
+
+    @Benchmark
+    public long exportAsNdjson() {
+        return drain(UserExport.write(Flux.fromIterable(collection), UserExport.Format.NDJSON, bufferFactory));
+    }
+
+    @Benchmark
+    public long exportAsCsv() {
+        return drain(UserExport.write(Flux.fromIterable(collection), UserExport.Format.CSV, bufferFactory));
+    }
+
+    private Flux<UserResponse> responses() {
+        return Flux.fromIterable(collection).map(mapper::toResponse);
+    }
+
+    private static long drain(final Flux<DataBuffer> buffers) {
+        return buffers
+                .map(buffer -> {
+                    final long bytes = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
@@ -0,0 +1,107 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.support.MicroBatcher;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulates a burst of concurrent findById calls against a store reached through a
+ * fixed-size connection pool, each round trip holding a connection for a fixed time.
+ * Sample-time mode reports p99 of the burst; the aux counter reports round trips.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindByIdBatchingBenchmark {
+
+    private static final Duration ROUND_TRIP = Duration.ofMillis(1);
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    @Param({"64"})
+    public int concurrency;
+
+    @Param({"8"})
+    public int poolSize;
+
+    private final AtomicLong roundTrips = new AtomicLong();
+    private MicroBatcher<String, User> batcher;
+    private Scheduler connections;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connections = Schedulers.newBoundedElastic(poolSize, Integer.MAX_VALUE, "connections");
+        batcher = new MicroBatcher<>(100, Duration.ofMillis(2), this::findBatch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connections.dispose();
+    }
+
+    @Benchmark
+    public List<User> burst(final RoundTrips counters) {
+        final long before = roundTrips.get();
+        final List<User> users = Flux.range(0, concurrency)
+                .flatMap(i -> findById(String.valueOf(i)), concurrency)
+                .collectList()
+                .block();
+        counters.roundTrips += roundTrips.get() - before;
+        return users;
+    }
+
+    private Mono<User> findById(final String id) {
+        if (batching) {
+            return batcher.submit(id);
+        }
+        return roundTrip().map(done -> User.builder().id(id).build());
+    }
+
+    private Mono<Void> findBatch(final List<MicroBatcher.Pending<String, User>> batch) {
+        return roundTrip()
+                .doOnNext(done -> batch.forEach(pending -> pending.success(User.builder().id(pending.item()).build())))
+                .then();
+    }
+
+    private Mono<Boolean> roundTrip() {
+        return Mono.fromCallable(() -> {
+                    roundTrips.incrementAndGet();
+                    LockSupport.parkNanos(ROUND_TRIP.toNanos());
+                    return true;
+                })
+                .subscribeOn(connections);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+        public long roundTrips;
+    }
+}
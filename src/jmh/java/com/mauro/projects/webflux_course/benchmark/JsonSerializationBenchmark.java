@@ -0,0 +1,77 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mauro.projects.webflux_course.controller.exceptions.StandardError;
+import com.mauro.projects.webflux_course.controller.exceptions.ValidationError;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encoding of the response bodies and decoding of the request body, using an
+ * ObjectMapper configured the way Spring Boot configures the WebFlux codecs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final UserResponse response = new UserResponse("65f1c0ffee0000000000abcd", "Mauro Vidal", "mauro@mail.com");
+    private final byte[] requestJson = "{\"name\":\"Mauro Vidal\",\"email\":\"mauro@mail.com\",\"password\":\"secret\"}".getBytes();
+    private final StandardError standardError = StandardError.builder()
+            .timestamp(LocalDateTime.of(2024, 1, 1, 12, 0))
+            .path("/users/65f1c0ffee0000000000abcd")
+            .status(404)
+            .error("Not Found")
+            .message("Object not found. Id: 65f1c0ffee0000000000abcd, Type: User")
+            .build();
+    private final ValidationError validationError = validationError();
+
+    @Benchmark
+    public byte[] writeUserResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public UserRequest readUserRequest() throws IOException {
+        return objectMapper.readValue(requestJson, UserRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeStandardError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(standardError);
+    }
+
+    @Benchmark
+    public byte[] writeValidationError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(validationError);
+    }
+
+    private static ValidationError validationError() {
+        ValidationError error = new ValidationError(
+                LocalDateTime.of(2024, 1, 1, 12, 0), "/users", 400, "Validation Error", "Error on validation attributes"
+        );
+        error.addError("name", "must be between 3 and 50 characters");
+        error.addError("email", "invalid email");
+        return error;
+    }
+}
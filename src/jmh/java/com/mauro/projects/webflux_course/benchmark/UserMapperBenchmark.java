@@ -0,0 +1,46 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.mapper.UserMapperImpl;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserMapperBenchmark {
+
+    private final UserMapper mapper = new UserMapperImpl();
+    private final UserRequest request = new UserRequest("Mauro Vidal", "mauro@mail.com", "secret");
+    private final User user = User.builder()
+            .id("65f1c0ffee0000000000abcd")
+            .name("Mauro Vidal")
+            .email("mauro@mail.com")
+            .version(3L)
+            .build();
+
+    @Benchmark
+    public User toEntity() {
+        return mapper.toEntity(request);
+    }
+
+    @Benchmark
+    public UserResponse toResponse() {
+        return mapper.toResponse(user);
+    }
+}
@@ -0,0 +1,118 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.mauro.projects.webflux_course.cache.RegisteredEmails;
+import com.mauro.projects.webflux_course.cache.UserCache;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapperImpl;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.repository.InMemoryChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryUserRepository;
+import com.mauro.projects.webflux_course.repository.InstrumentedUserRepository;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.UserService;
+import com.mauro.projects.webflux_course.service.UserWriteBuffer;
+import com.mauro.projects.webflux_course.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the real UserService pipeline (mapping, password hashing, cache, single-flight,
+ * change counter, repository metrics) over the in-memory backend, so the numbers are the
+ * service overhead without any database round trip. Hashing uses the lowest BCrypt cost so it does not
+ * drown everything else; raise the strength param to see its share.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    private static final String ID = "65f1c0ffee0000000000abcd";
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    @Param({"4"})
+    public int strength;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private ValidatorFactory validatorFactory;
+    private PasswordHasher passwordHasher;
+    private RegisteredEmails registeredEmails;
+    private UserService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final UserProperties properties = new UserProperties();
+        properties.getCache().setEnabled(cache);
+        properties.getHashing().setStrength(strength);
+        properties.getEmailFilter().setRefreshInterval(Duration.ZERO);
+
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final InMemoryChangeCounterRepository changeCounter = new InMemoryChangeCounterRepository();
+        final InstrumentedUserRepository repository = new InstrumentedUserRepository(new InMemoryUserRepository(), registry);
+        repository.save(User.builder().id(ID).name("Mauro Vidal").email("mauro@mail.com").version(0L).build()).block();
+
+        registeredEmails = new RegisteredEmails(repository, properties, registry);
+        registeredEmails.start();
+
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        passwordHasher = new PasswordHasher(properties, registry);
+        service = new UserService(
+                repository,
+                changeCounter,
+                new UserMapperImpl(),
+                validatorFactory.getValidator(),
+                properties,
+                new UserCache(properties, registry),
+                new SingleFlight<>("benchmark", registry),
+                passwordHasher,
+                registeredEmails,
+                new UserWriteBuffer(repository, changeCounter, properties, registry)
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registeredEmails.stop();
+        passwordHasher.destroy();
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public User findById() {
+        return service.findById(ID).block();
+    }
+
+    @Benchmark
+    public User save() {
+        final long n = sequence.incrementAndGet();
+        return service.save(new UserRequest("User " + n, "user" + n + "@mail.com", "secret")).block();
+    }
+
+    @Benchmark
+    public User updateName() {
+        return service.update(ID, new UserRequest("User " + sequence.incrementAndGet(), null, null), null).block();
+    }
+}
@@ -0,0 +1,175 @@
+package com.mauro.projects.webflux_course.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mauro.projects.webflux_course.cache.IdempotencyStore;
+import com.mauro.projects.webflux_course.cache.RegisteredEmails;
+import com.mauro.projects.webflux_course.cache.UserCache;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.config.UserRouterConfig;
+import com.mauro.projects.webflux_course.controller.exceptions.ControllerExceptionHandler;
+import com.mauro.projects.webflux_course.controller.impl.UserControllerImpl;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.mapper.UserMapperImpl;
+import com.mauro.projects.webflux_course.repository.InMemoryChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryUserRepository;
+import com.mauro.projects.webflux_course.repository.InstrumentedUserRepository;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.UserImportService;
+import com.mauro.projects.webflux_course.service.UserService;
+import com.mauro.projects.webflux_course.service.UserWriteBuffer;
+import com.mauro.projects.webflux_course.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Requests per millisecond through the full WebFlux handler chain (filters, mapping,
+ * argument resolution or request predicates, codecs, error handling) for the annotated
+ * controller and the functional routes, over the in-memory backend and without a network.
+ * Run with -prof gc to compare gc.alloc.rate.norm, the bytes allocated per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebStyleBenchmark {
+
+    private static final String ID = "65f1c0ffee0000000000abcd";
+    private static final String MISSING_ID = "65f1c0ffee0000000000ffff";
+    private static final String INVALID_REQUEST = "{\"name\":\" Mauro\",\"email\":\"mauro@mail.com\",\"password\":\"secret\"}";
+
+    @Param({"annotated", "functional"})
+    public String style;
+
+    private AnnotationConfigApplicationContext context;
+    private RegisteredEmails registeredEmails;
+    private PasswordHasher passwordHasher;
+    private HttpHandler httpHandler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Without Spring Boot's logging setup logback defaults to DEBUG for every request.
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+        final UserProperties properties = new UserProperties();
+        properties.getHashing().setStrength(4);
+        properties.getEmailFilter().setRefreshInterval(Duration.ZERO);
+
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final InMemoryChangeCounterRepository changeCounter = new InMemoryChangeCounterRepository();
+        final InstrumentedUserRepository repository = new InstrumentedUserRepository(new InMemoryUserRepository(), registry);
+        for (int i = 0; i < 10; i++) {
+            repository.save(User.builder()
+                    .id(ID.substring(0, 20) + String.format("%04x", 0xabcd + i))
+                    .name("User " + i)
+                    .email("user" + i + "@mail.com")
+                    .version(0L)
+                    .build()).block();
+        }
+
+        registeredEmails = new RegisteredEmails(repository, properties, registry);
+        registeredEmails.start();
+        passwordHasher = new PasswordHasher(properties, registry);
+
+        final UserMapper mapper = new UserMapperImpl();
+        final LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        final UserCache cache = new UserCache(properties, registry);
+        final UserService service = new UserService(
+                repository, changeCounter, mapper, validator, properties, cache,
+                new SingleFlight<>("benchmark", registry), passwordHasher, registeredEmails,
+                new UserWriteBuffer(repository, changeCounter, properties, registry)
+        );
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("benchmark", Map.of("users.web.style", style)));
+        context.registerBean(UserProperties.class, () -> properties);
+        context.registerBean(UserMapper.class, () -> mapper);
+        context.registerBean(UserService.class, () -> service);
+        context.registerBean(IdempotencyStore.class, () -> new IdempotencyStore(properties, registry));
+        context.registerBean(UserImportService.class, () -> new UserImportService(
+                repository, changeCounter, mapper, validator, new ObjectMapper(), properties, cache,
+                passwordHasher, registeredEmails
+        ));
+        context.registerBean("validator", LocalValidatorFactoryBean.class, () -> validator,
+                definition -> definition.setPrimary(true));
+        context.register(WebFlux.class, ControllerExceptionHandler.class, UserControllerImpl.class, UserRouterConfig.class);
+        context.refresh();
+
+        httpHandler = WebHttpHandlerBuilder.applicationContext(context).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        registeredEmails.stop();
+        passwordHasher.destroy();
+    }
+
+    @Benchmark
+    public HttpStatusCode findById() {
+        return exchange(MockServerHttpRequest.get("/users/" + ID).accept(APPLICATION_JSON).build());
+    }
+
+    @Benchmark
+    public HttpStatusCode findByIdNotFound() {
+        return exchange(MockServerHttpRequest.get("/users/" + MISSING_ID).accept(APPLICATION_JSON).build());
+    }
+
+    @Benchmark
+    public HttpStatusCode findAll() {
+        return exchange(MockServerHttpRequest.get("/users/all").accept(APPLICATION_JSON).build());
+    }
+
+    @Benchmark
+    public HttpStatusCode saveInvalid() {
+        return exchange(MockServerHttpRequest.post("/users")
+                .contentType(APPLICATION_JSON)
+                .accept(APPLICATION_JSON)
+                .body(INVALID_REQUEST));
+    }
+
+    private HttpStatusCode exchange(final MockServerHttpRequest request) {
+        final MockServerHttpResponse response = new MockServerHttpResponse();
+        httpHandler.handle(request, response).block();
+        return response.getStatusCode();
+    }
+
+    // Registered explicitly rather than annotated @Configuration, so component scanning
+    // never picks it up and switches off the WebFlux auto-configuration of the application.
+    @EnableWebFlux
+    static class WebFlux {
+    }
+}
@@ -1,9 +1,14 @@
 package com.mauro.projects.webflux_course;
 
+import com.mauro.projects.webflux_course.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(NativeHints.class)
 public class WebfluxCourseApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,118 @@
+package com.mauro.projects.webflux_course.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.service.exception.BadRequestException;
+import com.mauro.projects.webflux_course.service.exception.IdempotencyKeyReusedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remembers the outcome of requests sent with an Idempotency-Key. The first request under a
+ * key runs; its future stays in the cache, so retries arriving while it is in flight wait
+ * for it and retries arriving later replay it without writing again. Failed futures are
+ * dropped by the cache, so a retry after an error runs again. Each key remembers an HMAC
+ * of the request it was first used with, and reusing it for a different request is refused.
+ * The HMAC key is random and never leaves this instance, so the remembered value reveals
+ * nothing about the password it covers.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String HMAC = "HmacSHA256";
+
+    private final AsyncCache<String, String> outcomes;
+    private final SecretKeySpec fingerprintKey;
+
+    public IdempotencyStore(final UserProperties properties, final MeterRegistry registry) {
+        final var config = properties.getIdempotency();
+
+        if (config.isEnabled()) {
+            this.outcomes = CaffeineCacheMetrics.monitor(registry, Caffeine.newBuilder()
+                    .maximumSize(config.getMaximumSize())
+                    .expireAfterWrite(config.getExpireAfterWrite())
+                    .recordStats()
+                    .buildAsync(), "idempotency-keys");
+        } else {
+            this.outcomes = null;
+        }
+
+        final byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.fingerprintKey = new SecretKeySpec(secret, HMAC);
+    }
+
+    /**
+     * Runs the action once per key and emits whether this call was answered by an earlier
+     * one. Without a key, or with the store disabled, the action simply runs.
+     */
+    public Mono<Boolean> execute(final String key, final UserRequest request, final Supplier<Mono<?>> action) {
+        if (outcomes == null || key == null) {
+            return Mono.defer(action).thenReturn(false);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new BadRequestException("Idempotency-Key must have between 1 and " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        return Mono.defer(() -> {
+            final String fingerprint = fingerprint(request);
+            final AtomicBoolean ran = new AtomicBoolean();
+
+            // Suppressing cancellation keeps the first write going when its client gives up,
+            // so the retry that follows finds its result.
+            return Mono.fromFuture(() -> outcomes.get(key, (ignored, executor) -> {
+                        ran.set(true);
+                        return Mono.defer(action).thenReturn(fingerprint).toFuture();
+                    }), true)
+                    .map(recorded -> {
+                        if (!recorded.equals(fingerprint)) {
+                            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request");
+                        }
+                        return !ran.get();
+                    });
+        });
+    }
+
+    private String fingerprint(final UserRequest request) {
+        final Mac mac;
+        try {
+            mac = Mac.getInstance(HMAC);
+            mac.init(fingerprintKey);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 is not available", ex);
+        }
+
+        update(mac, request.name());
+        update(mac, request.email());
+        update(mac, request.password());
+        return HexFormat.of().formatHex(mac.doFinal());
+    }
+
+    /** Length-prefixes each field, so moving characters between fields changes the HMAC. */
+    private static void update(final Mac mac, final String field) {
+        if (field == null) {
+            mac.update((byte) 0);
+            return;
+        }
+        final byte[] bytes = field.getBytes(UTF_8);
+        mac.update((byte) 1);
+        mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        mac.update(bytes);
+    }
+}
@@ -0,0 +1,116 @@
+package com.mauro.projects.webflux_course.cache;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.repository.UserRepository;
+import com.mauro.projects.webflux_course.support.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Bloom filter of every registered email, used only to skip the duplicate check on signup.
+ * The filter is local to this instance and misses emails registered elsewhere until the
+ * next rebuild, so a negative answer is a hint, never a lookup result: a missed duplicate
+ * still hits the unique email index. Bloom filters cannot forget, so deleted or changed
+ * emails stay as false positives until the next rebuild. Until the first build finishes
+ * every email is reported as possibly present.
+ */
+@Slf4j
+@Component
+public class RegisteredEmails {
+
+    private final UserRepository repository;
+    private final UserProperties.EmailFilter config;
+    private final Counter negatives;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+    private Disposable refresh;
+
+    public RegisteredEmails(final UserRepository repository, final UserProperties properties, final MeterRegistry registry) {
+        this.repository = repository;
+        this.config = properties.getEmailFilter();
+        this.negatives = Counter.builder("users.email.filter.negatives")
+                .description("Signup duplicate checks skipped because the Bloom filter ruled the email out")
+                .register(registry);
+
+        Gauge.builder("users.email.filter.ready", this, filter -> filter.current == null ? 0 : 1)
+                .description("Whether the registered-email Bloom filter has been built")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        final Duration interval = config.getRefreshInterval();
+        final Flux<Long> ticks = interval == null || interval.isZero()
+                ? Flux.just(0L)
+                : Flux.interval(Duration.ZERO, interval);
+
+        refresh = ticks
+                .concatMap(tick -> rebuild()
+                        .doOnError(error -> log.warn("Could not build the registered email filter", error))
+                        .onErrorResume(error -> Mono.empty()))
+                .subscribe();
+    }
+
+    public boolean mightContain(final String email) {
+        final BloomFilter filter = current;
+        if (filter == null || filter.mightContain(email)) {
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    public void add(final String email) {
+        if (email == null) {
+            return;
+        }
+
+        final BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(email);
+        }
+        final BloomFilter next = building;
+        if (next != null) {
+            next.put(email);
+        }
+    }
+
+    Mono<Long> rebuild() {
+        return Mono.defer(() -> {
+            final BloomFilter next = BloomFilter.create(config.getExpectedInsertions(), config.getFalsePositiveRate());
+            building = next;
+
+            return repository.findAllEmails()
+                    .doOnNext(next::put)
+                    .count()
+                    .doOnSuccess(count -> {
+                        current = next;
+                        log.info("Registered email filter built with {} emails", count);
+                    })
+                    .doFinally(signal -> building = null);
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresh != null) {
+            refresh.dispose();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mauro.projects.webflux_course.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+@Component
+public class UserCache {
+
+    private final AsyncCache<String, User> cache;
+
+    public UserCache(final UserProperties properties, final MeterRegistry registry) {
+        final var config = properties.getCache();
+
+        if (config.isEnabled()) {
+            this.cache = CaffeineCacheMetrics.monitor(registry, Caffeine.newBuilder()
+                    .maximumSize(config.getMaximumSize())
+                    .expireAfterWrite(config.getExpireAfterWrite())
+                    .recordStats()
+                    .buildAsync(), "users");
+        } else {
+            this.cache = null;
+        }
+    }
+
+    public Mono<User> get(final String id, final Function<String, Mono<User>> loader) {
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    public void put(final User user) {
+        if (cache != null && user.getId() != null) {
+            cache.put(user.getId(), CompletableFuture.completedFuture(user.toBuilder().password(null).build()));
+        }
+    }
+
+    public void invalidate(final String id) {
+        if (cache != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+}
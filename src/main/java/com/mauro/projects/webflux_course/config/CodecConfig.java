@@ -0,0 +1,38 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mauro.projects.webflux_course.support.StreamingCborEncoder;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static com.mauro.projects.webflux_course.controller.MediaTypes.APPLICATION_SMILE;
+
+@Configuration
+public class CodecConfig {
+
+    @Bean
+    public CodecCustomizer binaryJacksonCodecs(final ObjectMapper objectMapper, final Jackson2ObjectMapperBuilder builder) {
+        final var cbor = builder.factory(new CBORFactory()).build();
+        final var smile = builder.factory(new SmileFactory()).build();
+
+        return configurer -> {
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, APPLICATION_SMILE));
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, APPLICATION_SMILE));
+
+            // Custom writers are offered before the default ones, so JSON goes first to stay
+            // the answer for requests without a specific Accept header.
+            configurer.customCodecs().register(new Jackson2JsonEncoder(objectMapper));
+            configurer.customCodecs().register(new StreamingCborEncoder(cbor));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cbor, MediaType.APPLICATION_CBOR));
+        };
+    }
+}
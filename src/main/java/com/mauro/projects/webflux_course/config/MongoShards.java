@@ -0,0 +1,71 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoPropertiesClientSettingsBuilderCustomizer;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One client and template per configured shard URI, each creating the User indexes on
+ * first use as the main template does, and all closed with the context. Clients get the
+ * same settings customizers as the main one, so the pool minimum and the Mongo metrics
+ * apply to every shard; only the customizer for spring.data.mongodb is left out, since
+ * the shard URI takes its place.
+ */
+public class MongoShards implements DisposableBean {
+
+    private final List<MongoClient> clients = new ArrayList<>();
+    private final Map<String, ReactiveMongoTemplate> templates = new LinkedHashMap<>();
+
+    public MongoShards(final List<UserProperties.Sharding.Shard> shards,
+                       final List<MongoClientSettingsBuilderCustomizer> customizers) {
+        for (UserProperties.Sharding.Shard shard : shards) {
+            final ConnectionString uri = new ConnectionString(shard.getUri());
+            if (uri.getDatabase() == null) {
+                throw new IllegalStateException("Shard " + shard.getName() + " needs a database in its uri");
+            }
+
+            final MongoClientSettings.Builder settings = MongoClientSettings.builder();
+            customizers.stream()
+                    .filter(customizer -> !(customizer instanceof MongoPropertiesClientSettingsBuilderCustomizer))
+                    .forEach(customizer -> customizer.customize(settings));
+            final MongoClient client = MongoClients.create(settings.applyConnectionString(uri).build());
+            clients.add(client);
+            templates.put(shard.getName(), new ReactiveMongoTemplate(
+                    new SimpleReactiveMongoDatabaseFactory(client, uri.getDatabase()), converter()
+            ));
+        }
+    }
+
+    public Map<String, ReactiveMongoTemplate> templates() {
+        return templates;
+    }
+
+    @Override
+    public void destroy() {
+        clients.forEach(MongoClient::close);
+    }
+
+    private static MappingMongoConverter converter() {
+        final MongoMappingContext context = new MongoMappingContext();
+        context.setAutoIndexCreation(true);
+        context.afterPropertiesSet();
+
+        final MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.mauro.projects.webflux_course.controller.exceptions.StandardError;
+import com.mauro.projects.webflux_course.controller.exceptions.ValidationError;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserPageResponse;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.validator.TrimStringValidator;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection the AOT engine cannot infer: error bodies written from exception handlers,
+ * the page body nested in ResponseEntity&lt;Mono&lt;...&gt;&gt;, the custom constraint validator
+ * Hibernate Validator instantiates by reflection, and the nested configuration property
+ * classes that are only reachable through getters.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(final RuntimeHints hints, final ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                UserRequest.class, UserResponse.class, UserPageResponse.class,
+                StandardError.class, ValidationError.class);
+
+        hints.reflection().registerType(TrimStringValidator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        for (Class<?> properties : UserProperties.class.getDeclaredClasses()) {
+            hints.reflection().registerType(properties,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
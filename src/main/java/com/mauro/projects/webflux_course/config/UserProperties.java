@@ -0,0 +1,189 @@
+package com.mauro.projects.webflux_course.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "users")
+public class UserProperties {
+
+    private final Repository repository = new Repository();
+    private final Query query = new Query();
+    private final Batch batch = new Batch();
+    private final Cache cache = new Cache();
+    private final Batching batching = new Batching();
+    private final Hashing hashing = new Hashing();
+    private final EmailFilter emailFilter = new EmailFilter();
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final Limiter limiter = new Limiter();
+    private final Resilience resilience = new Resilience();
+    private final WarmUp warmUp = new WarmUp();
+    private final Startup startup = new Startup();
+    private final Web web = new Web();
+    private final Idempotency idempotency = new Idempotency();
+    private final Sharding sharding = new Sharding();
+
+    @Data
+    public static class Repository {
+        private Backend backend = Backend.MONGO;
+
+        public enum Backend {
+            MONGO, MEMORY
+        }
+    }
+
+    @Data
+    public static class Query {
+        private int cursorBatchSize = 256;
+        private int defaultPageSize = 20;
+        private int maxPageSize = 500;
+    }
+
+    @Data
+    public static class Batch {
+        private int chunkSize = 500;
+        private int importConcurrency = 2;
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Batching {
+        private boolean enabled = false;
+        private int maxBatchSize = 100;
+        private Duration window = Duration.ofMillis(2);
+    }
+
+    @Data
+    public static class Hashing {
+        private int strength = 10;
+        private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int queueCapacity = 256;
+    }
+
+    @Data
+    public static class EmailFilter {
+        private boolean enabled = true;
+        private long expectedInsertions = 1_000_000;
+        private double falsePositiveRate = 0.01;
+        private Duration refreshInterval = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class WriteBehind {
+        private boolean enabled = false;
+        private int maxBatchSize = 200;
+        private int maxPending = 10_000;
+        private Duration window = Duration.ofMillis(5);
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Limiter {
+        private boolean enabled = true;
+        private final ConcurrencyLimit reads = new ConcurrencyLimit(64, 8, 512);
+        private final ConcurrencyLimit writes = new ConcurrencyLimit(32, 4, 256);
+    }
+
+    @Data
+    public static class Resilience {
+        private boolean enabled = true;
+        private Duration defaultTimeout = Duration.ofSeconds(2);
+        private final Map<String, Duration> timeouts = new HashMap<>();
+        private final Breaker circuitBreaker = new Breaker();
+        private final Hedging hedging = new Hedging();
+
+        public Duration timeout(final String operation) {
+            return timeouts.getOrDefault(operation, defaultTimeout);
+        }
+    }
+
+    @Data
+    public static class Breaker {
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(10);
+        private int halfOpenCalls = 5;
+    }
+
+    @Data
+    public static class Hedging {
+        private boolean enabled = false;
+        private double percentile = 0.95;
+        private Duration minDelay = Duration.ofMillis(2);
+        private int windowSize = 1024;
+    }
+
+    @Data
+    public static class WarmUp {
+        private boolean enabled = true;
+        private int mongoConnections = 8;
+        private int iterations = 2_000;
+        private int repositoryCalls = 64;
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Startup {
+        private boolean exitWhenReady = false;
+    }
+
+    @Data
+    public static class Sharding {
+        private boolean enabled = false;
+        private int virtualNodes = 160;
+        private int rebalanceConcurrency = 16;
+        private boolean singleInstance = false;
+        private List<Shard> shards = new ArrayList<>();
+
+        @Data
+        public static class Shard {
+            private String name;
+            private String uri;
+            private boolean joining = false;
+        }
+    }
+
+    @Data
+    public static class Idempotency {
+        private boolean enabled = true;
+        private long maximumSize = 100_000;
+        private Duration expireAfterWrite = Duration.ofHours(24);
+    }
+
+    @Data
+    public static class Web {
+        private Style style = Style.ANNOTATED;
+
+        public enum Style {
+            ANNOTATED, FUNCTIONAL
+        }
+    }
+
+    @Data
+    public static class ConcurrencyLimit {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        private double tolerance = 2.0;
+        private double smoothing = 0.2;
+
+        public ConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.EmailDirectory;
+import com.mauro.projects.webflux_course.repository.InMemoryChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryEmailDirectory;
+import com.mauro.projects.webflux_course.repository.InMemoryUserRepository;
+import com.mauro.projects.webflux_course.repository.InstrumentedUserRepository;
+import com.mauro.projects.webflux_course.repository.LimitedUserRepository;
+import com.mauro.projects.webflux_course.repository.MongoChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.MongoEmailDirectory;
+import com.mauro.projects.webflux_course.repository.MongoUserRepository;
+import com.mauro.projects.webflux_course.repository.ResilientUserRepository;
+import com.mauro.projects.webflux_course.repository.ShardRebalancer;
+import com.mauro.projects.webflux_course.repository.ShardedUserRepository;
+import com.mauro.projects.webflux_course.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+public class UserRepositoryConfig {
+
+    private static final String BACKEND = "users.repository.backend";
+    private static final String SHARDING = "users.sharding.enabled";
+    private static final String WARM_UP = "users.warm-up.enabled";
+
+    @Configuration
+    @ConditionalOnProperty(name = BACKEND, havingValue = "mongo", matchIfMissing = true)
+    static class Mongo {
+
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "false", matchIfMissing = true)
+        public UserRepository userRepository(
+                final ReactiveMongoTemplate mongoTemplate, final UserProperties properties, final MeterRegistry registry
+        ) {
+            return decorate(new MongoUserRepository(mongoTemplate, properties), properties, registry);
+        }
+
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "true")
+        public MongoShards mongoShards(
+                final UserProperties properties, final ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers
+        ) {
+            return new MongoShards(properties.getSharding().getShards(), customizers.orderedStream().toList());
+        }
+
+        /**
+         * Users live on the shard databases; the email directory and the change counter stay
+         * on the main database.
+         */
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "true")
+        public ShardRebalancer shardRebalancer(
+                final MongoShards shards, final ReactiveMongoTemplate mongoTemplate,
+                final UserProperties properties, final MeterRegistry registry
+        ) {
+            final Map<String, UserRepository> repositories = new LinkedHashMap<>();
+            shards.templates().forEach((name, template) -> repositories.put(name, new MongoUserRepository(template, properties)));
+            return rebalancer(repositories, new MongoEmailDirectory(mongoTemplate), properties, registry);
+        }
+
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "true")
+        public UserRepository shardedUserRepository(
+                final ShardRebalancer rebalancer, final UserProperties properties, final MeterRegistry registry
+        ) {
+            return decorate(rebalancer.repository(), properties, registry);
+        }
+
+        /**
+         * Keeps the connections opened by warm-up in the pool. Without warm-up the driver's own
+         * minimum applies.
+         */
+        @Bean
+        @ConditionalOnProperty(name = WARM_UP, havingValue = "true", matchIfMissing = true)
+        public MongoClientSettingsBuilderCustomizer minimumPoolCustomizer(final UserProperties properties) {
+            final int connections = properties.getWarmUp().getMongoConnections();
+            return settings -> settings.applyToConnectionPoolSettings(pool -> pool.minSize(connections));
+        }
+
+        @Bean
+        public ChangeCounterRepository changeCounterRepository(final ReactiveMongoTemplate mongoTemplate) {
+            return new MongoChangeCounterRepository(mongoTemplate);
+        }
+
+        private static UserRepository decorate(
+                final UserRepository repository, final UserProperties properties, final MeterRegistry registry
+        ) {
+            final var resilience = properties.getResilience();
+            final UserRepository limited = properties.getLimiter().isEnabled()
+                    ? new LimitedUserRepository(repository, properties.getLimiter(),
+                            resilience.isEnabled() ? resilience::timeout : operation -> null, registry)
+                    : repository;
+            final UserRepository resilient = resilience.isEnabled()
+                    ? new ResilientUserRepository(limited, resilience, registry)
+                    : limited;
+            return new InstrumentedUserRepository(resilient, registry);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = BACKEND, havingValue = "memory")
+    static class Memory {
+
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "false", matchIfMissing = true)
+        public UserRepository userRepository(final MeterRegistry registry) {
+            return new InstrumentedUserRepository(new InMemoryUserRepository(), registry);
+        }
+
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "true")
+        public ShardRebalancer shardRebalancer(final UserProperties properties, final MeterRegistry registry) {
+            final Map<String, UserRepository> repositories = new LinkedHashMap<>();
+            properties.getSharding().getShards().forEach(shard -> repositories.put(shard.getName(), new InMemoryUserRepository()));
+            return rebalancer(repositories, new InMemoryEmailDirectory(), properties, registry);
+        }
+
+        @Bean
+        @ConditionalOnProperty(name = SHARDING, havingValue = "true")
+        public UserRepository shardedUserRepository(final ShardRebalancer rebalancer, final MeterRegistry registry) {
+            return new InstrumentedUserRepository(rebalancer.repository(), registry);
+        }
+
+        @Bean
+        public ChangeCounterRepository changeCounterRepository() {
+            return new InMemoryChangeCounterRepository();
+        }
+    }
+
+    private static ShardRebalancer rebalancer(
+            final Map<String, UserRepository> shards, final EmailDirectory directory,
+            final UserProperties properties, final MeterRegistry registry
+    ) {
+        final var config = properties.getSharding();
+        final Map<String, UserRepository> active = new LinkedHashMap<>();
+        final Map<String, UserRepository> joining = new LinkedHashMap<>();
+        for (UserProperties.Sharding.Shard shard : config.getShards()) {
+            (shard.isJoining() ? joining : active).put(shard.getName(), shards.get(shard.getName()));
+        }
+        if (active.isEmpty()) {
+            throw new IllegalStateException("users.sharding needs at least one shard that is not joining");
+        }
+        if (!joining.isEmpty() && !config.isSingleInstance()) {
+            throw new IllegalStateException("Joining shards need users.sharding.single-instance=true: the ring is kept "
+                    + "in memory, so other instances would keep routing users to the shards they moved from");
+        }
+
+        return new ShardRebalancer(
+                new ShardedUserRepository(active, config.getVirtualNodes(), directory, registry),
+                joining, config.getRebalanceConcurrency(), registry
+        );
+    }
+}
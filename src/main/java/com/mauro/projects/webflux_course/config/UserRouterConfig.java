@@ -0,0 +1,50 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.mauro.projects.webflux_course.cache.IdempotencyStore;
+import com.mauro.projects.webflux_course.controller.exceptions.ControllerExceptionHandler;
+import com.mauro.projects.webflux_course.controller.functional.UserHandler;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.service.UserService;
+import jakarta.validation.Validator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * With users.web.style=functional, the core user routes are served by UserHandler. Router
+ * functions are matched before request mappings, so these routes take precedence and every
+ * other route still reaches UserControllerImpl. Nested routes match by prefix, so the save
+ * route names its empty path to keep /users/batch and /users/import off it, and ids are
+ * restricted to ObjectId hex so literal paths such as /users/export or /users/page are
+ * never taken for an id.
+ */
+@Configuration
+@ConditionalOnProperty(name = "users.web.style", havingValue = "functional")
+public class UserRouterConfig {
+
+    private static final String ID = "/{id:[0-9a-fA-F]{24}}";
+
+    @Bean
+    public UserHandler userHandler(final UserService service, final UserMapper mapper, final Validator validator,
+                                   final IdempotencyStore idempotencyStore,
+                                   final ControllerExceptionHandler exceptionHandler) {
+        return new UserHandler(service, mapper, validator, idempotencyStore, exceptionHandler);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> userRoutes(final UserHandler handler) {
+        return route()
+                .path("/users", users -> users
+                        .POST("", handler::save)
+                        .GET("/all", handler::findAll)
+                        .GET(ID, handler::findById)
+                        .PATCH(ID, handler::update)
+                        .DELETE(ID, handler::delete))
+                .onError(Throwable.class, handler::error)
+                .build();
+    }
+}
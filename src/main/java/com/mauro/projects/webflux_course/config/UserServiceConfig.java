@@ -0,0 +1,16 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.support.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class UserServiceConfig {
+
+    @Bean
+    public SingleFlight<String, User> findByIdFlight(final MeterRegistry registry) {
+        return new SingleFlight<>("users.findById", registry);
+    }
+}
@@ -0,0 +1,53 @@
+package com.mauro.projects.webflux_course.controller;
+
+import com.mauro.projects.webflux_course.model.request.UserFields;
+import com.mauro.projects.webflux_course.service.exception.PreconditionFailedException;
+
+import java.util.Objects;
+
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(final Long version, final UserFields fields) {
+        if (version == null) {
+            return null;
+        }
+        return quote(version + selectionSuffix(fields));
+    }
+
+    public static String collection(final long changeCounter, final Object... parts) {
+        return quote("c" + changeCounter + "-" + Integer.toHexString(Objects.hash(parts)));
+    }
+
+    public static Long expectedVersion(final String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        final String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match must be a single strong ETag");
+        }
+
+        final String value = tag.substring(1, tag.length() - 1);
+        final int suffix = value.indexOf('-');
+        try {
+            return Long.parseLong(suffix < 0 ? value : value.substring(0, suffix));
+        } catch (NumberFormatException ex) {
+            throw new PreconditionFailedException("If-Match does not match any version: " + tag);
+        }
+    }
+
+    private static String selectionSuffix(final UserFields fields) {
+        if (fields == null || fields.equals(UserFields.DEFAULT)) {
+            return "";
+        }
+        return "-" + Integer.toHexString(fields.names().hashCode());
+    }
+
+    private static String quote(final String value) {
+        return "\"" + value + "\"";
+    }
+}
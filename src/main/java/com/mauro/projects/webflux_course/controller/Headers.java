@@ -0,0 +1,10 @@
+package com.mauro.projects.webflux_course.controller;
+
+public final class Headers {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    private Headers() {
+    }
+}
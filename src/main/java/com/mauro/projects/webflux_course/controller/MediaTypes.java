@@ -0,0 +1,12 @@
+package com.mauro.projects.webflux_course.controller;
+
+import org.springframework.http.MediaType;
+
+public final class MediaTypes {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    private MediaTypes() {
+    }
+}
@@ -1,29 +1,98 @@
 package com.mauro.projects.webflux_course.controller;
 
 import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.model.response.UserImportProgress;
+import com.mauro.projects.webflux_course.model.response.UserPageResponse;
 import com.mauro.projects.webflux_course.model.response.UserResponse;
 import jakarta.validation.Valid;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+
+import static com.mauro.projects.webflux_course.controller.Headers.IDEMPOTENCY_KEY;
+import static com.mauro.projects.webflux_course.controller.MediaTypes.APPLICATION_SMILE_VALUE;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_CBOR_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
+
 public interface UserController {
 
     @PostMapping
-    ResponseEntity<Mono<Void>> save(@Valid @RequestBody UserRequest request);
+    Mono<ResponseEntity<Void>> save(
+            @Valid @RequestBody UserRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    );
+
+    @PostMapping(
+            value = "/batch",
+            consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE, APPLICATION_SMILE_VALUE},
+            produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE}
+    )
+    ResponseEntity<Flux<UserBatchItemResponse>> saveAll(@RequestBody Flux<UserRequest> requests);
+
+    @PostMapping(
+            value = "/import",
+            consumes = {APPLICATION_NDJSON_VALUE, TEXT_PLAIN_VALUE},
+            produces = APPLICATION_NDJSON_VALUE
+    )
+    ResponseEntity<Flux<UserImportProgress>> importUsers(@RequestBody Flux<DataBuffer> body);
 
     @GetMapping(value = "/{id}")
-    ResponseEntity<Mono<UserResponse>> findById(@PathVariable String id);
+    Mono<ResponseEntity<UserResponse>> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) String fields
+    );
+
+    @GetMapping(value = "/by-email/{email}")
+    Mono<ResponseEntity<UserResponse>> findByEmail(
+            @PathVariable String email,
+            @RequestParam(required = false) String fields
+    );
+
+    @RequestMapping(value = "/by-email/{email}", method = RequestMethod.HEAD)
+    Mono<ResponseEntity<Void>> existsByEmail(@PathVariable String email);
+
+    @GetMapping(
+            value = "/all",
+            produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE}
+    )
+    Mono<ResponseEntity<Flux<UserResponse>>> findAll(@RequestParam(required = false) String fields);
+
+    @GetMapping("/export")
+    ResponseEntity<Flux<DataBuffer>> export(
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+            ServerHttpResponse response
+    );
 
-    @GetMapping("/all")
-    ResponseEntity<Flux<UserResponse>> findAll();
+    @GetMapping("/page")
+    Mono<ResponseEntity<Mono<UserPageResponse>>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields
+    );
 
     @PatchMapping(value = "/{id}")
-    ResponseEntity<Mono<UserResponse>> update(@PathVariable String id, @RequestBody UserRequest request);
+    Mono<ResponseEntity<UserResponse>> update(
+            @PathVariable String id,
+            @RequestBody UserRequest request,
+            @RequestHeader(value = IF_MATCH, required = false) String ifMatch
+    );
 
     @DeleteMapping(value = "/{id}")
-    ResponseEntity<Mono<Void>> delete(@PathVariable String id);
+    ResponseEntity<Mono<Void>> delete(
+            @PathVariable String id,
+            @RequestHeader(value = IF_MATCH, required = false) String ifMatch
+    );
 
 
 }
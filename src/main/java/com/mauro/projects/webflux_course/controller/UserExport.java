@@ -0,0 +1,130 @@
+package com.mauro.projects.webflux_course.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.InvalidExportFormatException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes users straight into data buffers from the server's allocator, a chunk of rows per
+ * buffer, without going through UserResponse or an ObjectMapper. Only one chunk of users is
+ * held at a time, so memory does not grow with the collection.
+ */
+public final class UserExport {
+
+    private static final int ROWS_PER_BUFFER = 128;
+    private static final int ESTIMATED_ROW_SIZE = 96;
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+        CSV(new MediaType("text", "csv", UTF_8), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(final MediaType mediaType, final String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(final String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidExportFormatException("Unknown export format: " + value);
+            }
+        }
+    }
+
+    private UserExport() {
+    }
+
+    public static Flux<DataBuffer> write(final Flux<User> users, final Format format, final DataBufferFactory factory) {
+        final Flux<DataBuffer> rows = users.buffer(ROWS_PER_BUFFER)
+                .map(chunk -> format == Format.CSV ? csv(chunk, factory) : ndjson(chunk, factory));
+
+        final Flux<DataBuffer> body = format == Format.CSV
+                ? Flux.concat(Flux.defer(() -> Flux.just(factory.wrap("id,name,email\n".getBytes(UTF_8)))), rows)
+                : rows;
+
+        return body.doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private static DataBuffer ndjson(final List<User> chunk, final DataBufferFactory factory) {
+        final DataBuffer buffer = factory.allocateBuffer(chunk.size() * ESTIMATED_ROW_SIZE);
+        try (JsonGenerator generator = JSON.createGenerator(buffer.asOutputStream())) {
+            generator.setRootValueSeparator(null);
+            for (User user : chunk) {
+                generator.writeStartObject();
+                generator.writeStringField("id", user.getId());
+                generator.writeStringField("name", user.getName());
+                generator.writeStringField("email", user.getEmail());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        } catch (IOException ex) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(ex);
+        }
+        return buffer;
+    }
+
+    private static DataBuffer csv(final List<User> chunk, final DataBufferFactory factory) {
+        final StringBuilder rows = new StringBuilder(chunk.size() * ESTIMATED_ROW_SIZE);
+        for (User user : chunk) {
+            appendCsv(rows, user.getId()).append(',');
+            appendCsv(rows, user.getName()).append(',');
+            appendCsv(rows, user.getEmail()).append('\n');
+        }
+
+        final DataBuffer buffer = factory.allocateBuffer(rows.length() + rows.length() / 4);
+        buffer.write(rows, UTF_8);
+        return buffer;
+    }
+
+    private static StringBuilder appendCsv(final StringBuilder out, final String value) {
+        if (value == null) {
+            return out;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return out.append(value);
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+}
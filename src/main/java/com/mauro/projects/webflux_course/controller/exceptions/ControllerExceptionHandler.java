@@ -1,42 +1,57 @@
 package com.mauro.projects.webflux_course.controller.exceptions;
 
+import com.mauro.projects.webflux_course.service.exception.BadRequestException;
+import com.mauro.projects.webflux_course.service.exception.DuplicateKeyMessages;
+import com.mauro.projects.webflux_course.service.exception.GatewayTimeoutException;
+import com.mauro.projects.webflux_course.service.exception.IdempotencyKeyReusedException;
 import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import com.mauro.projects.webflux_course.service.exception.PreconditionFailedException;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.filter.reactive.ServerHttpObservationFilter;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 @ControllerAdvice
 public class ControllerExceptionHandler {
 
     @ExceptionHandler(DuplicateKeyException.class)
     ResponseEntity<Mono<StandardError>> duplicatedKeyException(
-            DuplicateKeyException ex, ServerHttpRequest request
+            DuplicateKeyException ex, ServerWebExchange exchange
     ) {
+        observe(exchange, ex);
         return ResponseEntity.badRequest()
                 .body(Mono.just(
                         StandardError.builder()
                                 .timestamp(now())
                                 .status(BAD_REQUEST.value())
                                 .error(BAD_REQUEST.getReasonPhrase())
-                                .message(verifyDupKey(ex.getMessage()))
-                                .path(request.getPath().toString())
+                                .message(DuplicateKeyMessages.resolve(ex.getMessage()))
+                                .path(exchange.getRequest().getPath().toString())
                                 .build()
                 ));
 
     }
 
     @ExceptionHandler(WebExchangeBindException.class)
-    public ResponseEntity<Mono<ValidationError>> validationError(WebExchangeBindException ex, ServerHttpRequest request) {
-        ValidationError error = new ValidationError(now(), request.getPath().toString(), BAD_REQUEST.value(), "Validation Error", "Error on validation attributes");
+    public ResponseEntity<Mono<ValidationError>> validationError(WebExchangeBindException ex, ServerWebExchange exchange) {
+        observe(exchange, ex);
+        ValidationError error = new ValidationError(now(), exchange.getRequest().getPath().toString(), BAD_REQUEST.value(), "Validation Error", "Error on validation attributes");
 
         for (FieldError x : ex.getBindingResult().getFieldErrors()) {
             error.addError(x.getField(), x.getDefaultMessage());
@@ -46,9 +61,16 @@ public class ControllerExceptionHandler {
     }
 
     @ExceptionHandler(ObjectNotFoundException.class)
-    ResponseEntity<Mono<StandardError>> objectNotFoundException(
-            ObjectNotFoundException ex, ServerHttpRequest request
+    ResponseEntity<?> objectNotFoundException(
+            ObjectNotFoundException ex, ServerWebExchange exchange
     ) {
+        observe(exchange, ex);
+        final String path = exchange.getRequest().getPath().toString();
+        if (ErrorBodies.acceptsJson(exchange.getRequest())) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .contentType(APPLICATION_JSON)
+                    .body(ErrorBodies.json(NOT_FOUND, path, ex.getMessage()));
+        }
         return ResponseEntity.status(NOT_FOUND)
                 .body(Mono.just(
                         StandardError.builder()
@@ -56,16 +78,98 @@ public class ControllerExceptionHandler {
                                 .status(NOT_FOUND.value())
                                 .error(NOT_FOUND.getReasonPhrase())
                                 .message(ex.getMessage())
-                                .path(request.getPath().toString())
+                                .path(path)
                                 .build()
                 ));
     }
 
-    private String verifyDupKey(String message) {
-        if (message.contains("email dup key")) {
-            return "E-mail already registered";
-        }
-        return "Dup key exception";
+    @ExceptionHandler(PreconditionFailedException.class)
+    ResponseEntity<Mono<StandardError>> preconditionFailedException(
+            PreconditionFailedException ex, ServerWebExchange exchange
+    ) {
+        observe(exchange, ex);
+        return ResponseEntity.status(PRECONDITION_FAILED)
+                .body(Mono.just(
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(PRECONDITION_FAILED.value())
+                                .error(PRECONDITION_FAILED.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(exchange.getRequest().getPath().toString())
+                                .build()
+                ));
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    ResponseEntity<Mono<StandardError>> serviceUnavailableException(
+            ServiceUnavailableException ex, ServerWebExchange exchange
+    ) {
+        observe(exchange, ex);
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(Mono.just(
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(SERVICE_UNAVAILABLE.value())
+                                .error(SERVICE_UNAVAILABLE.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(exchange.getRequest().getPath().toString())
+                                .build()
+                ));
+    }
+
+    @ExceptionHandler(GatewayTimeoutException.class)
+    ResponseEntity<Mono<StandardError>> gatewayTimeoutException(
+            GatewayTimeoutException ex, ServerWebExchange exchange
+    ) {
+        observe(exchange, ex);
+        return ResponseEntity.status(GATEWAY_TIMEOUT)
+                .body(Mono.just(
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(GATEWAY_TIMEOUT.value())
+                                .error(GATEWAY_TIMEOUT.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(exchange.getRequest().getPath().toString())
+                                .build()
+                ));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    ResponseEntity<Mono<StandardError>> idempotencyKeyReusedException(
+            IdempotencyKeyReusedException ex, ServerWebExchange exchange
+    ) {
+        observe(exchange, ex);
+        return ResponseEntity.status(UNPROCESSABLE_ENTITY)
+                .body(Mono.just(
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(UNPROCESSABLE_ENTITY.value())
+                                .error(UNPROCESSABLE_ENTITY.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(exchange.getRequest().getPath().toString())
+                                .build()
+                ));
+    }
+
+    @ExceptionHandler(BadRequestException.class)
+    ResponseEntity<Mono<StandardError>> badRequestException(
+            BadRequestException ex, ServerWebExchange exchange
+    ) {
+        observe(exchange, ex);
+        return ResponseEntity.badRequest()
+                .body(Mono.just(
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(BAD_REQUEST.value())
+                                .error(BAD_REQUEST.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(exchange.getRequest().getPath().toString())
+                                .build()
+                ));
+    }
+
+    private void observe(ServerWebExchange exchange, Throwable ex) {
+        ServerHttpObservationFilter.findObservationContext(exchange).ifPresent(context -> context.setError(ex));
+    }
 }
@@ -0,0 +1,90 @@
+package com.mauro.projects.webflux_course.controller.exceptions;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * StandardError bodies written straight to JSON bytes for hot error paths, skipping handler
+ * negotiation and Jackson. The fixed fields are encoded once per status and the timestamp,
+ * which only has one-second resolution, is formatted at most once per second. Field order
+ * and timestamp format are the ones Jackson writes for StandardError.
+ */
+public final class ErrorBodies {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:s");
+    private static final JsonStringEncoder ENCODER = JsonStringEncoder.getInstance();
+    private static final byte[] NULL = "null".getBytes(US_ASCII);
+    private static final Map<HttpStatus, byte[]> STATUS_FIELDS = new ConcurrentHashMap<>();
+
+    private static volatile Timestamp timestamp = new Timestamp(-1, null);
+
+    private ErrorBodies() {
+    }
+
+    public static byte[] json(final HttpStatus status, final String path, final String message) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(160);
+        out.writeBytes(currentTimestamp());
+        out.writeBytes("\"path\":".getBytes(US_ASCII));
+        string(out, path);
+        out.writeBytes(STATUS_FIELDS.computeIfAbsent(status, ErrorBodies::statusFields));
+        string(out, message);
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * Whether the fast JSON body is what content negotiation would pick anyway: no Accept
+     * header, or a most preferred type, by quality and then specificity, that JSON is
+     * compatible with, such as *&#47;*. Types with q=0 are not acceptable at all.
+     */
+    public static boolean acceptsJson(final ServerHttpRequest request) {
+        final List<MediaType> accept = new ArrayList<>(request.getHeaders().getAccept());
+        if (accept.isEmpty()) {
+            return true;
+        }
+        accept.removeIf(type -> type.getQualityValue() == 0);
+        MediaType.sortBySpecificityAndQuality(accept);
+        return !accept.isEmpty() && accept.get(0).isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    private static byte[] currentTimestamp() {
+        final long second = System.currentTimeMillis() / 1000;
+        Timestamp current = timestamp;
+        if (current.second() != second) {
+            current = new Timestamp(second, ("{\"timestamp\":\"" + LocalDateTime.now().format(TIMESTAMP) + "\",")
+                    .getBytes(US_ASCII));
+            timestamp = current;
+        }
+        return current.json();
+    }
+
+    private static byte[] statusFields(final HttpStatus status) {
+        return (",\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase() + "\",\"message\":")
+                .getBytes(US_ASCII);
+    }
+
+    private static void string(final ByteArrayOutputStream out, final String value) {
+        if (value == null) {
+            out.writeBytes(NULL);
+            return;
+        }
+        out.write('"');
+        out.writeBytes(ENCODER.quoteAsUTF8(value));
+        out.write('"');
+    }
+
+    private record Timestamp(long second, byte[] json) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.mauro.projects.webflux_course.controller.functional;
+
+import com.mauro.projects.webflux_course.cache.IdempotencyStore;
+import com.mauro.projects.webflux_course.controller.ETags;
+import com.mauro.projects.webflux_course.controller.exceptions.ControllerExceptionHandler;
+import com.mauro.projects.webflux_course.controller.exceptions.ValidationError;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserFields;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.service.UserService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+import static com.mauro.projects.webflux_course.controller.Headers.IDEMPOTENCY_KEY;
+import static com.mauro.projects.webflux_course.controller.Headers.IDEMPOTENT_REPLAYED;
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.CacheControl.noCache;
+
+/**
+ * Functional counterpart of the save, findById, findAll, update and delete endpoints of
+ * UserControllerImpl, with the same status codes, ETags and bodies. Requests are validated
+ * programmatically, and errors are rendered by the @ExceptionHandler methods of
+ * ControllerExceptionHandler, so both styles answer with identical StandardError and
+ * ValidationError bodies.
+ */
+public class UserHandler {
+
+    private final UserService service;
+    private final UserMapper mapper;
+    private final Validator validator;
+    private final IdempotencyStore idempotencyStore;
+    private final ControllerExceptionHandler exceptionHandler;
+    private final ExceptionHandlerMethodResolver errorHandlers;
+
+    public UserHandler(final UserService service, final UserMapper mapper, final Validator validator,
+                       final IdempotencyStore idempotencyStore, final ControllerExceptionHandler exceptionHandler) {
+        this.service = service;
+        this.mapper = mapper;
+        this.validator = validator;
+        this.idempotencyStore = idempotencyStore;
+        this.exceptionHandler = exceptionHandler;
+        this.errorHandlers = new ExceptionHandlerMethodResolver(exceptionHandler.getClass());
+    }
+
+    public Mono<ServerResponse> save(final ServerRequest request) {
+        return body(request).flatMap(body -> {
+            final Set<ConstraintViolation<UserRequest>> violations = validator.validate(body);
+            if (!violations.isEmpty()) {
+                return ServerResponse.status(BAD_REQUEST).bodyValue(validationError(request, violations));
+            }
+            final String idempotencyKey = request.headers().firstHeader(IDEMPOTENCY_KEY);
+            return idempotencyStore.execute(idempotencyKey, body, () -> service.save(body))
+                    .flatMap(replayed -> replayed
+                            ? ServerResponse.status(CREATED).header(IDEMPOTENT_REPLAYED, "true").build()
+                            : ServerResponse.status(CREATED).build());
+        });
+    }
+
+    public Mono<ServerResponse> findById(final ServerRequest request) {
+        return Mono.defer(() -> {
+            final UserFields selection = UserFields.parse(request.queryParam("fields").orElse(null));
+            final String id = request.pathVariable("id");
+
+            return service.findById(id)
+                    .flatMap(user -> withETag(ServerResponse.ok(), ETags.of(user.getVersion(), selection))
+                            .bodyValue(selection.apply(mapper.toResponse(user))));
+        });
+    }
+
+    public Mono<ServerResponse> findAll(final ServerRequest request) {
+        return Mono.defer(() -> {
+            final UserFields selection = UserFields.parse(request.queryParam("fields").orElse(null));
+
+            return service.collectionVersion()
+                    .flatMap(version -> ServerResponse.ok()
+                            .cacheControl(noCache())
+                            .eTag(ETags.collection(version, selection.names()))
+                            .body(service.findAll(selection).map(mapper::toResponse).map(selection::apply),
+                                    UserResponse.class));
+        });
+    }
+
+    public Mono<ServerResponse> update(final ServerRequest request) {
+        return body(request).flatMap(body -> service
+                .update(request.pathVariable("id"), body, ETags.expectedVersion(request.headers().firstHeader(IF_MATCH)))
+                .flatMap(user -> withETag(ServerResponse.ok(), ETags.of(user.getVersion(), UserFields.DEFAULT))
+                        .bodyValue(mapper.toResponse(user))));
+    }
+
+    public Mono<ServerResponse> delete(final ServerRequest request) {
+        return Mono.defer(() -> service
+                .delete(request.pathVariable("id"), ETags.expectedVersion(request.headers().firstHeader(IF_MATCH)))
+                .then(ServerResponse.ok().build()));
+    }
+
+    /**
+     * Renders an error with the ControllerExceptionHandler method that would have handled it
+     * for the annotated controller; errors it has no method for are left to the default
+     * WebFlux error handling, as they are there.
+     */
+    public Mono<ServerResponse> error(final Throwable error, final ServerRequest request) {
+        final Method method = errorHandlers.resolveMethodByExceptionType(error.getClass());
+        if (method == null) {
+            return Mono.error(error);
+        }
+
+        ReflectionUtils.makeAccessible(method);
+        final ResponseEntity<?> entity = (ResponseEntity<?>) ReflectionUtils.invokeMethod(
+                method, exceptionHandler, error, request.exchange()
+        );
+        final ServerResponse.BodyBuilder response = ServerResponse.status(entity.getStatusCode())
+                .headers(headers -> headers.addAll(entity.getHeaders()));
+
+        final Object body = entity.getBody();
+        if (body instanceof Mono<?> mono) {
+            return response.body(mono, Object.class);
+        }
+        return body == null ? response.build() : response.bodyValue(body);
+    }
+
+    private Mono<UserRequest> body(final ServerRequest request) {
+        return request.bodyToMono(UserRequest.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("No request body")));
+    }
+
+    private ValidationError validationError(final ServerRequest request,
+                                            final Set<ConstraintViolation<UserRequest>> violations) {
+        final ValidationError error = new ValidationError(now(), request.path(), BAD_REQUEST.value(),
+                "Validation Error", "Error on validation attributes");
+        for (ConstraintViolation<UserRequest> violation : violations) {
+            error.addError(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return error;
+    }
+
+    private ServerResponse.BodyBuilder withETag(final ServerResponse.BodyBuilder builder, final String etag) {
+        return etag == null ? builder : builder.eTag(etag);
+    }
+}
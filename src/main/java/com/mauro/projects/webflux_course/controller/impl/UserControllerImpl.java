@@ -1,70 +1,177 @@
 package com.mauro.projects.webflux_course.controller.impl;
 
+import com.mauro.projects.webflux_course.cache.IdempotencyStore;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.controller.ETags;
 import com.mauro.projects.webflux_course.controller.UserController;
-import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.controller.UserExport;
 import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserFields;
 import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.model.response.UserImportProgress;
+import com.mauro.projects.webflux_course.model.response.UserPageResponse;
 import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.service.PageToken;
+import com.mauro.projects.webflux_course.service.UserImportService;
 import com.mauro.projects.webflux_course.service.UserService;
-import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import static java.lang.String.format;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static com.mauro.projects.webflux_course.controller.Headers.IDEMPOTENT_REPLAYED;
+import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
 
 @RestController
 @RequestMapping(value = "/users")
 @RequiredArgsConstructor
 public class UserControllerImpl implements UserController {
 
+    private static final StringDecoder LINES = StringDecoder.textPlainOnly(List.of("\n"), true);
+    private static final ResolvableType STRING_TYPE = ResolvableType.forClass(String.class);
+
     private final UserService service;
+    private final UserImportService importService;
     private final UserMapper mapper;
+    private final UserProperties properties;
+    private final IdempotencyStore idempotencyStore;
+
+    @Override
+    public Mono<ResponseEntity<Void>> save(final @Valid UserRequest request, final String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, request, () -> service.save(request))
+                .map(replayed -> {
+                    final ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
+                    return replayed
+                            ? response.header(IDEMPOTENT_REPLAYED, "true").build()
+                            : response.build();
+                });
+    }
+
+    @Override
+    public ResponseEntity<Flux<UserBatchItemResponse>> saveAll(Flux<UserRequest> requests) {
+        return ResponseEntity.ok().body(service.saveAll(requests));
+    }
+
+    @Override
+    public ResponseEntity<Flux<UserImportProgress>> importUsers(Flux<DataBuffer> body) {
+        final Flux<String> lines = LINES.decode(body, STRING_TYPE, null, Map.of());
+        return ResponseEntity.ok().body(importService.importUsers(lines));
+    }
+
+    @Override
+    public Mono<ResponseEntity<UserResponse>> findById(String id, String fields) {
+        final UserFields selection = UserFields.parse(fields);
+
+        return service.findById(id)
+                .map(user -> withETag(ResponseEntity.ok(), ETags.of(user.getVersion(), selection))
+                        .body(selection.apply(mapper.toResponse(user))));
+    }
 
     @Override
-    public ResponseEntity<Mono<Void>> save(final @Valid UserRequest request) {
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(service.save(request).then());
+    public Mono<ResponseEntity<UserResponse>> findByEmail(String email, String fields) {
+        final UserFields selection = UserFields.parse(fields);
+
+        return service.findByEmail(email)
+                .map(user -> withETag(ResponseEntity.ok(), ETags.of(user.getVersion(), selection))
+                        .body(selection.apply(mapper.toResponse(user))));
     }
 
     @Override
-    public ResponseEntity<Mono<UserResponse>> findById(String id) {
-        return ResponseEntity.ok(handleNotFound(service.findById(id), id).map(mapper::toResponse));
+    public Mono<ResponseEntity<Void>> existsByEmail(String email) {
+        return service.existsByEmail(email)
+                .map(exists -> exists
+                        ? ResponseEntity.ok().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
     }
 
+    @Override
+    public Mono<ResponseEntity<Flux<UserResponse>>> findAll(String fields) {
+        final UserFields selection = UserFields.parse(fields);
 
-    private <T> Mono<T> handleNotFound(Mono<T> mono, String id) {
-        return mono.switchIfEmpty(Mono.error(
-                new ObjectNotFoundException(
-                        format("Object not found. Id: %s, Type: %s", id, User.class.getSimpleName())
-                )
-        ));
+        return service.collectionVersion()
+                .map(version -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(ETags.collection(version, selection.names()))
+                        .body(service.findAll(selection)
+                                .map(mapper::toResponse)
+                                .map(selection::apply)));
     }
 
+    @Override
+    public ResponseEntity<Flux<DataBuffer>> export(String format, Instant since, ServerHttpResponse response) {
+        final UserExport.Format exportFormat = UserExport.Format.parse(format);
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + exportFormat.extension())
+                        .build()
+                        .toString())
+                .body(UserExport.write(service.export(since), exportFormat, response.bufferFactory()));
+    }
 
     @Override
-    public ResponseEntity<Flux<UserResponse>> findAll() {
-        return ResponseEntity.ok().body(
-                service.findAll().map(mapper::toResponse)
-        );
+    public Mono<ResponseEntity<Mono<UserPageResponse>>> findPage(String after, Integer limit, String fields) {
+        final UserFields selection = UserFields.parse(fields);
+        final int pageSize = pageSize(limit);
+
+        return service.collectionVersion()
+                .map(version -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(ETags.collection(version, after, pageSize, selection.names()))
+                        .body(service.findPage(after, pageSize, selection)
+                                .map(mapper::toResponse)
+                                .collectList()
+                                .map(content -> new UserPageResponse(
+                                        content.stream().map(selection::apply).toList(),
+                                        nextToken(content, pageSize)
+                                ))));
+    }
+
+    private int pageSize(Integer limit) {
+        final var query = properties.getQuery();
+        if (limit == null) {
+            return query.getDefaultPageSize();
+        }
+        return Math.max(1, Math.min(limit, query.getMaxPageSize()));
     }
 
+    private String nextToken(List<UserResponse> content, int pageSize) {
+        if (content.size() < pageSize) {
+            return null;
+        }
+        return PageToken.encode(content.get(content.size() - 1).id());
+    }
 
 
     @Override
-    public ResponseEntity<Mono<UserResponse>> update(String id, UserRequest request) {
-        return ResponseEntity.ok().body(
-                service.update(id, request).map(mapper::toResponse)
-        );
+    public Mono<ResponseEntity<UserResponse>> update(String id, UserRequest request, String ifMatch) {
+        return service.update(id, request, ETags.expectedVersion(ifMatch))
+                .map(user -> withETag(ResponseEntity.ok(), ETags.of(user.getVersion(), UserFields.DEFAULT))
+                        .body(mapper.toResponse(user)));
     }
 
     @Override
-    public ResponseEntity<Mono<Void>> delete(String id) {
-        return ResponseEntity.ok().body(service.delete(id).then());
+    public ResponseEntity<Mono<Void>> delete(String id, String ifMatch) {
+        return ResponseEntity.ok().body(service.delete(id, ETags.expectedVersion(ifMatch)).then());
+    }
+
+    private ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, String etag) {
+        return etag == null ? builder : builder.eTag(etag);
     }
 }
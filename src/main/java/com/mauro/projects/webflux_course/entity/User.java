@@ -3,11 +3,12 @@ package com.mauro.projects.webflux_course.entity;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @Document
 public class User {
 
@@ -19,4 +20,7 @@ public class User {
     private String email;
     private String password;
 
+    @Version
+    private Long version;
+
 }
@@ -0,0 +1,45 @@
+package com.mauro.projects.webflux_course.model.request;
+
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.service.exception.InvalidFieldSelectionException;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public record UserFields(Set<String> names) {
+
+    private static final Set<String> SELECTABLE = Set.of("id", "name", "email");
+
+    public static final UserFields DEFAULT = new UserFields(SELECTABLE);
+
+    public static UserFields parse(final String fields) {
+        if (fields == null || fields.isBlank()) {
+            return DEFAULT;
+        }
+
+        final Set<String> names = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            final String name = field.trim();
+            if (!SELECTABLE.contains(name)) {
+                throw new InvalidFieldSelectionException("Unknown field: " + name);
+            }
+            names.add(name);
+        }
+        return new UserFields(Set.copyOf(names));
+    }
+
+    public boolean includes(final String name) {
+        return names.contains(name);
+    }
+
+    public UserResponse apply(final UserResponse response) {
+        if (names.size() == SELECTABLE.size()) {
+            return response;
+        }
+        return new UserResponse(
+                includes("id") ? response.id() : null,
+                includes("name") ? response.name() : null,
+                includes("email") ? response.email() : null
+        );
+    }
+}
@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.model.response;
+
+public record FieldErrorResponse(
+        String fieldName,
+        String message
+) {
+}
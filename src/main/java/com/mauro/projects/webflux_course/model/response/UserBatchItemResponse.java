@@ -0,0 +1,26 @@
+package com.mauro.projects.webflux_course.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
+
+@JsonInclude(NON_EMPTY)
+public record UserBatchItemResponse(
+        long index,
+        boolean success,
+        String id,
+        String email,
+        String message,
+        List<FieldErrorResponse> errors
+) {
+
+    public static UserBatchItemResponse created(long index, String id, String email) {
+        return new UserBatchItemResponse(index, true, id, email, null, List.of());
+    }
+
+    public static UserBatchItemResponse failed(long index, String email, String message, List<FieldErrorResponse> errors) {
+        return new UserBatchItemResponse(index, false, null, email, message, errors);
+    }
+}
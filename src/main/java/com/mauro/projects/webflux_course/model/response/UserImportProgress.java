@@ -0,0 +1,16 @@
+package com.mauro.projects.webflux_course.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
+
+@JsonInclude(NON_EMPTY)
+public record UserImportProgress(
+        long lines,
+        long accepted,
+        long rejected,
+        List<UserBatchItemResponse> rejections
+) {
+}
@@ -0,0 +1,9 @@
+package com.mauro.projects.webflux_course.model.response;
+
+import java.util.List;
+
+public record UserPageResponse(
+        List<UserResponse> content,
+        String next
+) {
+}
@@ -1,9 +1,13 @@
 package com.mauro.projects.webflux_course.model.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+@JsonInclude(NON_NULL)
 public record UserResponse(
         String id,
         String name,
-        String email,
-        String password
+        String email
 ) {
 }
@@ -0,0 +1,17 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import org.springframework.dao.DataAccessException;
+
+import java.util.List;
+import java.util.Map;
+
+public record BulkInsertResult(
+        List<User> users,
+        Map<Integer, DataAccessException> errors
+) {
+
+    public boolean failed(int position) {
+        return errors.containsKey(position);
+    }
+}
@@ -0,0 +1,12 @@
+package com.mauro.projects.webflux_course.repository;
+
+import reactor.core.publisher.Mono;
+
+public interface ChangeCounterRepository {
+
+    String USERS = "user";
+
+    Mono<Long> increment(String name);
+
+    Mono<Long> current(String name);
+}
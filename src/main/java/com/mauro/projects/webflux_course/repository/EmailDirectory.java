@@ -0,0 +1,52 @@
+package com.mauro.projects.webflux_course.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Global email to user id index for the sharded repository. Users are spread over shards
+ * by id, so a unique index inside each shard cannot keep emails unique; claiming the email
+ * here before writing does. Mapping to the id rather than to a shard keeps entries valid
+ * while users move between shards.
+ */
+public interface EmailDirectory {
+
+    /**
+     * Emits true when the email now belongs to the id, either newly or already, and false
+     * when another user holds it.
+     */
+    Mono<Boolean> claim(String email, String id);
+
+    /**
+     * Claims every email for the id next to it in one round trip and emits the positions of
+     * the claims refused because another user holds the email.
+     */
+    Mono<Set<Integer>> claimAll(List<Claim> claims);
+
+    Mono<String> idOf(String email);
+
+    /**
+     * The ids registered for the given emails; emails nobody holds are left out.
+     */
+    Mono<Map<String, String>> idsOf(Collection<String> emails);
+
+    /**
+     * Drops the entry only while it still belongs to the id.
+     */
+    Mono<Void> release(String email, String id);
+
+    /**
+     * Drops each entry that still belongs to its id, in one round trip.
+     */
+    Mono<Void> releaseAll(List<Claim> claims);
+
+    Flux<String> emails();
+
+    record Claim(String email, String id) {
+    }
+}
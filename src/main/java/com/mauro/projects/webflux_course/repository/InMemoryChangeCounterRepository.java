@@ -0,0 +1,25 @@
+package com.mauro.projects.webflux_course.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InMemoryChangeCounterRepository implements ChangeCounterRepository {
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Long> increment(final String name) {
+        return Mono.fromSupplier(() -> counters.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet());
+    }
+
+    @Override
+    public Mono<Long> current(final String name) {
+        return Mono.fromSupplier(() -> {
+            AtomicLong counter = counters.get(name);
+            return counter == null ? 0L : counter.get();
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.mauro.projects.webflux_course.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class InMemoryEmailDirectory implements EmailDirectory {
+
+    private final ConcurrentMap<String, String> ids = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Boolean> claim(final String email, final String id) {
+        return Mono.fromSupplier(() -> holds(email, id));
+    }
+
+    @Override
+    public Mono<Set<Integer>> claimAll(final List<Claim> claims) {
+        return Mono.fromSupplier(() -> {
+            final Set<Integer> refused = new HashSet<>();
+            for (int i = 0; i < claims.size(); i++) {
+                if (!holds(claims.get(i).email(), claims.get(i).id())) {
+                    refused.add(i);
+                }
+            }
+            return refused;
+        });
+    }
+
+    @Override
+    public Mono<String> idOf(final String email) {
+        return Mono.fromSupplier(() -> ids.get(email));
+    }
+
+    @Override
+    public Mono<Map<String, String>> idsOf(final Collection<String> emails) {
+        return Mono.fromSupplier(() -> {
+            final Map<String, String> found = new HashMap<>();
+            for (String email : emails) {
+                final String id = ids.get(email);
+                if (id != null) {
+                    found.put(email, id);
+                }
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public Mono<Void> release(final String email, final String id) {
+        return Mono.fromRunnable(() -> ids.remove(email, id));
+    }
+
+    @Override
+    public Mono<Void> releaseAll(final List<Claim> claims) {
+        return Mono.fromRunnable(() -> claims.forEach(claim -> ids.remove(claim.email(), claim.id())));
+    }
+
+    @Override
+    public Flux<String> emails() {
+        return Flux.defer(() -> Flux.fromIterable(ids.keySet()));
+    }
+
+    private boolean holds(final String email, final String id) {
+        final String owner = ids.putIfAbsent(email, id);
+        return owner == null || owner.equals(id);
+    }
+}
@@ -0,0 +1,273 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static java.lang.String.format;
+
+/**
+ * Users kept in a skip list ordered by id, so paging walks the map the same way the Mongo
+ * backend walks the _id index. Reads never lock; writes take a single monitor so the id map
+ * and the unique email index change together. Stored users are never handed out, only copies.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private final ConcurrentNavigableMap<String, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, String> emails = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    @Override
+    public Mono<User> save(final User user) {
+        return Mono.fromCallable(() -> {
+            synchronized (writeLock) {
+                final User existing = user.getId() == null ? null : users.get(user.getId());
+                if (existing != null && user.getVersion() != null && !user.getVersion().equals(existing.getVersion())) {
+                    throw new OptimisticLockingFailureException(
+                            format("Version %s of user %s is stale", user.getVersion(), user.getId())
+                    );
+                }
+
+                final User stored = user.toBuilder()
+                        .id(user.getId() == null ? new ObjectId().toHexString() : user.getId())
+                        .version(existing == null ? 0L : existing.getVersion() + 1)
+                        .build();
+                store(existing, stored);
+                user.setId(stored.getId());
+                user.setVersion(stored.getVersion());
+                return user;
+            }
+        });
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertAll(final List<User> users) {
+        return Mono.fromCallable(() -> {
+            final Map<Integer, DataAccessException> errors = new HashMap<>();
+            synchronized (writeLock) {
+                for (int i = 0; i < users.size(); i++) {
+                    final User user = users.get(i);
+                    if (user.getId() == null) {
+                        user.setId(new ObjectId().toHexString());
+                    }
+                    if (user.getVersion() == null) {
+                        user.setVersion(0L);
+                    }
+
+                    if (this.users.containsKey(user.getId())) {
+                        errors.put(i, duplicateKey("_id", user.getId()));
+                    } else {
+                        try {
+                            store(null, user.toBuilder().build());
+                        } catch (DuplicateKeyException ex) {
+                            errors.put(i, ex);
+                        }
+                    }
+                }
+            }
+            return new BulkInsertResult(users, errors);
+        });
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertAllByEmail(final List<User> users) {
+        return Mono.fromCallable(() -> {
+            final Map<Integer, DataAccessException> errors = new HashMap<>();
+            int inserted = 0;
+            int updated = 0;
+            synchronized (writeLock) {
+                for (int i = 0; i < users.size(); i++) {
+                    final User user = users.get(i);
+                    final String id = emails.get(user.getEmail());
+                    final User existing = id == null ? null : this.users.get(id);
+                    final String newId = user.getId() == null ? new ObjectId().toHexString() : user.getId();
+                    if (existing == null && this.users.containsKey(newId)) {
+                        errors.put(i, duplicateKey("_id", newId));
+                        continue;
+                    }
+
+                    final User stored = (existing == null ? user.toBuilder().id(newId) : existing.toBuilder())
+                            .name(user.getName())
+                            .password(user.getPassword())
+                            .version(existing == null ? 1L : existing.getVersion() + 1)
+                            .build();
+                    try {
+                        store(existing, stored);
+                    } catch (DuplicateKeyException ex) {
+                        errors.put(i, ex);
+                        continue;
+                    }
+                    user.setId(stored.getId());
+                    user.setVersion(stored.getVersion());
+                    if (existing == null) {
+                        inserted++;
+                    } else {
+                        updated++;
+                    }
+                }
+            }
+            return new BulkUpsertResult(users, inserted, updated, errors);
+        });
+    }
+
+    @Override
+    public Mono<User> findById(final String id) {
+        return Mono.fromSupplier(() -> withoutPassword(users.get(id)));
+    }
+
+    @Override
+    public Mono<User> findCompleteById(final String id) {
+        return Mono.fromSupplier(() -> {
+            final User user = users.get(id);
+            return user == null ? null : user.toBuilder().build();
+        });
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return Flux.fromIterable(ids)
+                .distinct()
+                .mapNotNull(id -> withoutPassword(users.get(id)));
+    }
+
+    @Override
+    public Mono<User> findByEmail(final String email) {
+        return Mono.fromSupplier(() -> {
+            final String id = emails.get(email);
+            return id == null ? null : withoutPassword(users.get(id));
+        });
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(final String email) {
+        return Mono.fromSupplier(() -> emails.containsKey(email));
+    }
+
+    @Override
+    public Flux<String> findAllEmails() {
+        return Flux.defer(() -> Flux.fromIterable(emails.keySet()));
+    }
+
+    @Override
+    public Flux<User> findAll(final Collection<String> fields) {
+        return Flux.fromIterable(users.values())
+                .map(user -> projected(user, fields));
+    }
+
+    @Override
+    public Flux<User> findPage(final String afterId, final int limit, final Collection<String> fields) {
+        return Flux.defer(() -> Flux.fromIterable((afterId == null ? users : users.tailMap(afterId, false)).values()))
+                .take(limit, true)
+                .map(user -> projected(user, fields));
+    }
+
+    @Override
+    public Flux<User> findCreatedSince(final Instant since) {
+        return Flux.defer(() -> Flux.fromIterable(
+                        (since == null ? users : users.tailMap(ObjectIds.minimumAt(since), true)).values()
+                ))
+                .map(user -> projected(user, List.of("name", "email")));
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final UserPatch patch) {
+        return Mono.fromCallable(() -> {
+            synchronized (writeLock) {
+                final User existing = users.get(id);
+                if (existing == null || !matches(existing, expectedVersion)) {
+                    return null;
+                }
+
+                final User updated = apply(existing.toBuilder(), patch)
+                        .version(existing.getVersion() + 1)
+                        .build();
+                store(existing, updated);
+                return withoutPassword(updated);
+            }
+        });
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id, final Long expectedVersion) {
+        return Mono.fromCallable(() -> {
+            synchronized (writeLock) {
+                final User existing = users.get(id);
+                if (existing == null || !matches(existing, expectedVersion)) {
+                    return null;
+                }
+
+                users.remove(id);
+                emails.remove(existing.getEmail(), id);
+                return existing.toBuilder().build();
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> existsById(final String id) {
+        return Mono.fromSupplier(() -> users.containsKey(id));
+    }
+
+    private void store(final User existing, final User user) {
+        if (user.getEmail() != null) {
+            final String owner = emails.putIfAbsent(user.getEmail(), user.getId());
+            if (owner != null && !owner.equals(user.getId())) {
+                throw duplicateKey("email", user.getEmail());
+            }
+        }
+        if (existing != null && existing.getEmail() != null && !existing.getEmail().equals(user.getEmail())) {
+            emails.remove(existing.getEmail(), existing.getId());
+        }
+        users.put(user.getId(), user);
+    }
+
+    private boolean matches(final User user, final Long expectedVersion) {
+        return expectedVersion == null || Objects.equals(expectedVersion, user.getVersion());
+    }
+
+    private User.UserBuilder apply(final User.UserBuilder builder, final UserPatch patch) {
+        if (patch.name() != null) {
+            builder.name(patch.name());
+        }
+        if (patch.email() != null) {
+            builder.email(patch.email());
+        }
+        if (patch.password() != null) {
+            builder.password(patch.password());
+        }
+        return builder;
+    }
+
+    private DuplicateKeyException duplicateKey(final String index, final String value) {
+        return new DuplicateKeyException(
+                format("E11000 duplicate key error collection: user index: %s dup key: { %s: \"%s\" }", index, index, value)
+        );
+    }
+
+    private User withoutPassword(final User user) {
+        return user == null ? null : user.toBuilder().password(null).build();
+    }
+
+    private User projected(final User user, final Collection<String> fields) {
+        return User.builder()
+                .id(user.getId())
+                .name(fields.contains("name") ? user.getName() : null)
+                .email(fields.contains("email") ? user.getEmail() : null)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.support.OperationMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public class InstrumentedUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final OperationMetrics metrics;
+
+    public InstrumentedUserRepository(final UserRepository delegate, final MeterRegistry registry) {
+        this.delegate = delegate;
+        this.metrics = new OperationMetrics("users.repository", registry);
+    }
+
+    @Override
+    public Mono<User> save(final User user) {
+        return metrics.mono("save", delegate.save(user));
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertAll(final List<User> users) {
+        return metrics.mono("insertAll", delegate.insertAll(users));
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertAllByEmail(final List<User> users) {
+        return metrics.mono("upsertAllByEmail", delegate.upsertAllByEmail(users));
+    }
+
+    @Override
+    public Mono<User> findById(final String id) {
+        return metrics.mono("findById", delegate.findById(id));
+    }
+
+    @Override
+    public Mono<User> findCompleteById(final String id) {
+        return metrics.mono("findCompleteById", delegate.findCompleteById(id));
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return metrics.flux("findAllById", delegate.findAllById(ids));
+    }
+
+    @Override
+    public Mono<User> findByEmail(final String email) {
+        return metrics.mono("findByEmail", delegate.findByEmail(email));
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(final String email) {
+        return metrics.mono("existsByEmail", delegate.existsByEmail(email));
+    }
+
+    @Override
+    public Flux<String> findAllEmails() {
+        return metrics.flux("findAllEmails", delegate.findAllEmails());
+    }
+
+    @Override
+    public Flux<User> findAll(final Collection<String> fields) {
+        return metrics.flux("findAll", delegate.findAll(fields));
+    }
+
+    @Override
+    public Flux<User> findPage(final String afterId, final int limit, final Collection<String> fields) {
+        return metrics.flux("findPage", delegate.findPage(afterId, limit, fields));
+    }
+
+    @Override
+    public Flux<User> findCreatedSince(final Instant since) {
+        return metrics.flux("findCreatedSince", delegate.findCreatedSince(since));
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final UserPatch patch) {
+        return metrics.mono("findAndModify", delegate.findAndModify(id, expectedVersion, patch));
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id, final Long expectedVersion) {
+        return metrics.mono("findAndRemove", delegate.findAndRemove(id, expectedVersion));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(final String id) {
+        return metrics.mono("existsById", delegate.existsById(id));
+    }
+}
@@ -0,0 +1,164 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import com.mauro.projects.webflux_course.support.AdaptiveConcurrencyLimiter;
+import com.mauro.projects.webflux_course.support.AdaptiveConcurrencyLimiter.LimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Sheds repository calls once reads or writes exceed their adaptive concurrency limit, so a
+ * slow database sees a bounded number of requests and callers get a fast 503 instead of
+ * waiting in the driver's pool queue. The deadlines are the per-operation timeouts applied
+ * around this repository, so the limiter can tell those timeouts from other cancellations.
+ */
+public class LimitedUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final Limit reads;
+    private final Limit writes;
+
+    public LimitedUserRepository(final UserRepository delegate, final UserProperties.Limiter config,
+                                 final MeterRegistry registry) {
+        this(delegate, config, operation -> null, registry);
+    }
+
+    public LimitedUserRepository(final UserRepository delegate, final UserProperties.Limiter config,
+                                 final Function<String, Duration> deadlines, final MeterRegistry registry) {
+        this.delegate = delegate;
+        this.reads = new Limit("read", config.getReads(), deadlines, registry);
+        this.writes = new Limit("write", config.getWrites(), deadlines, registry);
+    }
+
+    @Override
+    public Mono<User> save(final User user) {
+        return writes.mono("save", delegate.save(user));
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertAll(final List<User> users) {
+        return writes.mono("insertAll", delegate.insertAll(users));
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertAllByEmail(final List<User> users) {
+        return writes.mono("upsertAllByEmail", delegate.upsertAllByEmail(users));
+    }
+
+    @Override
+    public Mono<User> findById(final String id) {
+        return reads.mono("findById", delegate.findById(id));
+    }
+
+    @Override
+    public Mono<User> findCompleteById(final String id) {
+        return reads.mono("findCompleteById", delegate.findCompleteById(id));
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return reads.flux("findAllById", delegate.findAllById(ids));
+    }
+
+    @Override
+    public Mono<User> findByEmail(final String email) {
+        return reads.mono("findByEmail", delegate.findByEmail(email));
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(final String email) {
+        return reads.mono("existsByEmail", delegate.existsByEmail(email));
+    }
+
+    @Override
+    public Flux<String> findAllEmails() {
+        return reads.flux("findAllEmails", delegate.findAllEmails());
+    }
+
+    @Override
+    public Flux<User> findAll(final Collection<String> fields) {
+        return reads.flux("findAll", delegate.findAll(fields));
+    }
+
+    @Override
+    public Flux<User> findPage(final String afterId, final int limit, final Collection<String> fields) {
+        return reads.flux("findPage", delegate.findPage(afterId, limit, fields));
+    }
+
+    @Override
+    public Flux<User> findCreatedSince(final Instant since) {
+        return reads.flux("findCreatedSince", delegate.findCreatedSince(since));
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final UserPatch patch) {
+        return writes.mono("findAndModify", delegate.findAndModify(id, expectedVersion, patch));
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id, final Long expectedVersion) {
+        return writes.mono("findAndRemove", delegate.findAndRemove(id, expectedVersion));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(final String id) {
+        return reads.mono("existsById", delegate.existsById(id));
+    }
+
+    private static final class Limit {
+
+        private final String kind;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final Function<String, Duration> deadlines;
+        private final Counter rejections;
+
+        private Limit(final String kind, final UserProperties.ConcurrencyLimit config,
+                      final Function<String, Duration> deadlines, final MeterRegistry registry) {
+            this.kind = kind;
+            this.deadlines = deadlines;
+            this.limiter = new AdaptiveConcurrencyLimiter(
+                    config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+                    config.getTolerance(), config.getSmoothing()
+            );
+            this.rejections = Counter.builder("users.limiter.rejections")
+                    .description("Repository calls shed because the concurrency limit was reached")
+                    .tag("kind", kind)
+                    .register(registry);
+
+            Gauge.builder("users.limiter.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("kind", kind)
+                    .register(registry);
+            Gauge.builder("users.limiter.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                    .description("Repository calls holding a concurrency permit")
+                    .tag("kind", kind)
+                    .register(registry);
+        }
+
+        private <T> Mono<T> mono(final String operation, final Mono<T> source) {
+            return limiter.mono(source, deadlines.apply(operation)).onErrorMap(LimitExceededException.class, this::shed);
+        }
+
+        private <T> Flux<T> flux(final String operation, final Flux<T> source) {
+            return limiter.flux(source, deadlines.apply(operation)).onErrorMap(LimitExceededException.class, this::shed);
+        }
+
+        private ServiceUnavailableException shed(final LimitExceededException ex) {
+            rejections.increment();
+            return new ServiceUnavailableException(format("Too many concurrent user %ss, try again later", kind));
+        }
+    }
+}
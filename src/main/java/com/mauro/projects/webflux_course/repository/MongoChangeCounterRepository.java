@@ -0,0 +1,46 @@
+package com.mauro.projects.webflux_course.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class MongoChangeCounterRepository implements ChangeCounterRepository {
+
+    private static final String COLLECTION = "counters";
+    private static final String VALUE = "value";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Long> increment(final String name) {
+        return mongoTemplate.findAndModify(
+                        byName(name),
+                        new Update().inc(VALUE, 1L),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        Document.class,
+                        COLLECTION
+                )
+                .map(this::value);
+    }
+
+    @Override
+    public Mono<Long> current(final String name) {
+        return mongoTemplate.findOne(byName(name), Document.class, COLLECTION)
+                .map(this::value)
+                .defaultIfEmpty(0L);
+    }
+
+    private Query byName(final String name) {
+        return new Query(Criteria.where("_id").is(name));
+    }
+
+    private long value(final Document document) {
+        return ((Number) document.get(VALUE)).longValue();
+    }
+}
@@ -0,0 +1,127 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * One document per email, keyed by the email itself, so the _id index is the uniqueness
+ * check and claiming is a single insert. Bulk claims are one unordered insertMany; the
+ * positions it reports as duplicate keys are then checked against their owner in one query.
+ */
+public class MongoEmailDirectory implements EmailDirectory {
+
+    static final String COLLECTION = "user_emails";
+
+    private static final int DUPLICATE_KEY_CODE = 11000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public MongoEmailDirectory(final ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Boolean> claim(final String email, final String id) {
+        return mongoTemplate.insert(entry(email, id), COLLECTION)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, ex -> idOf(email).map(id::equals).defaultIfEmpty(false));
+    }
+
+    @Override
+    public Mono<Set<Integer>> claimAll(final List<Claim> claims) {
+        if (claims.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+
+        final List<Document> entries = claims.stream().map(claim -> entry(claim.email(), claim.id())).toList();
+        return mongoTemplate.getCollection(COLLECTION)
+                .flatMap(collection -> Mono.from(collection.insertMany(entries, new InsertManyOptions().ordered(false))))
+                .thenReturn(Set.<Integer>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> refused(claims, ex));
+    }
+
+    @Override
+    public Mono<String> idOf(final String email) {
+        return mongoTemplate.findById(email, Document.class, COLLECTION)
+                .mapNotNull(document -> document.getString("userId"));
+    }
+
+    @Override
+    public Mono<Map<String, String>> idsOf(final Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return mongoTemplate.find(new Query(Criteria.where("_id").in(emails)), Document.class, COLLECTION)
+                .collectMap(document -> document.getString("_id"), document -> document.getString("userId"));
+    }
+
+    @Override
+    public Mono<Void> release(final String email, final String id) {
+        return mongoTemplate.remove(new Query(owned(email, id)), COLLECTION)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> releaseAll(final List<Claim> claims) {
+        if (claims.isEmpty()) {
+            return Mono.empty();
+        }
+        final Criteria[] owned = claims.stream().map(claim -> owned(claim.email(), claim.id())).toArray(Criteria[]::new);
+        return mongoTemplate.remove(new Query(new Criteria().orOperator(owned)), COLLECTION)
+                .then();
+    }
+
+    @Override
+    public Flux<String> emails() {
+        final Query query = new Query();
+        query.fields().include("_id");
+
+        return mongoTemplate.find(query, Document.class, COLLECTION)
+                .mapNotNull(document -> document.getString("_id"));
+    }
+
+    /**
+     * A duplicate key only refuses the claim when the entry belongs to another id; an entry
+     * already held by the same id, from a retry or a repeated email, counts as claimed.
+     */
+    private Mono<Set<Integer>> refused(final List<Claim> claims, final MongoBulkWriteException ex) {
+        final List<Integer> duplicates = new ArrayList<>();
+        for (BulkWriteError error : ex.getWriteErrors()) {
+            if (error.getCode() != DUPLICATE_KEY_CODE) {
+                return Mono.error(ex);
+            }
+            duplicates.add(error.getIndex());
+        }
+        if (ex.getWriteConcernError() != null) {
+            return Mono.error(ex);
+        }
+
+        return idsOf(duplicates.stream().map(i -> claims.get(i).email()).distinct().toList())
+                .map(owners -> duplicates.stream()
+                        .filter(i -> !claims.get(i).id().equals(owners.get(claims.get(i).email())))
+                        .collect(Collectors.toSet()));
+    }
+
+    private static Document entry(final String email, final String id) {
+        return new Document("_id", email).append("userId", id);
+    }
+
+    private static Criteria owned(final String email, final String id) {
+        return Criteria.where("_id").is(email).and("userId").is(id);
+    }
+}
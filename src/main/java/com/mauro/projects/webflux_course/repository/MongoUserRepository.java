@@ -0,0 +1,291 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.support.MicroBatcher;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MongoUserRepository implements UserRepository {
+
+    private static final int DUPLICATE_KEY_CODE = 11000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final UserProperties properties;
+    private final MicroBatcher<String, User> findByIdBatcher;
+
+    public MongoUserRepository(final ReactiveMongoTemplate mongoTemplate, final UserProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+
+        final var batching = properties.getBatching();
+        this.findByIdBatcher = batching.isEnabled()
+                ? new MicroBatcher<>(batching.getMaxBatchSize(), batching.getWindow(), this::findBatch)
+                : null;
+    }
+
+    @Override
+    public Mono<User> save(final User user) {
+        return mongoTemplate.save(user);
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertAll(final List<User> users) {
+        if (users.isEmpty()) {
+            return Mono.just(new BulkInsertResult(users, Map.of()));
+        }
+
+        final List<Document> documents = users.stream().map(this::toDocument).toList();
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+                .flatMap(collection -> Mono.from(
+                        collection.insertMany(documents, new InsertManyOptions().ordered(false))
+                ))
+                .map(result -> Map.<Integer, DataAccessException>of())
+                .onErrorResume(MongoBulkWriteException.class, this::writeErrors)
+                .map(errors -> new BulkInsertResult(assignIds(users, documents), errors));
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertAllByEmail(final List<User> users) {
+        if (users.isEmpty()) {
+            return Mono.just(new BulkUpsertResult(users, 0, 0, Map.of()));
+        }
+
+        final List<UpdateOneModel<Document>> upserts = users.stream()
+                .map(user -> new UpdateOneModel<Document>(
+                        Filters.eq("email", user.getEmail()),
+                        upsert(user),
+                        new UpdateOptions().upsert(true)
+                ))
+                .toList();
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+                .flatMap(collection -> Mono.from(
+                        collection.bulkWrite(upserts, new BulkWriteOptions().ordered(false))
+                ))
+                .map(result -> upsertResult(users, result, Map.of()))
+                .onErrorResume(MongoBulkWriteException.class, ex -> ex.getWriteConcernError() != null
+                        ? Mono.error(ex)
+                        : Mono.just(upsertResult(users, ex.getWriteResult(), errors(ex))));
+    }
+
+    @Override
+    public Mono<User> findById(String id) {
+        if (findByIdBatcher != null) {
+            return findByIdBatcher.submit(id);
+        }
+        return mongoTemplate.findOne(withoutPassword(new Query(Criteria.where("id").is(id))), User.class);
+    }
+
+    @Override
+    public Mono<User> findCompleteById(final String id) {
+        return mongoTemplate.findById(id, User.class);
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return mongoTemplate.find(withoutPassword(cursorQuery().addCriteria(Criteria.where("id").in(ids))), User.class);
+    }
+
+    @Override
+    public Mono<User> findByEmail(final String email) {
+        return mongoTemplate.findOne(withoutPassword(new Query(Criteria.where("email").is(email))), User.class);
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(final String email) {
+        return mongoTemplate.exists(new Query(Criteria.where("email").is(email)), User.class);
+    }
+
+    @Override
+    public Flux<String> findAllEmails() {
+        Query query = cursorQuery();
+        query.fields().include("email").exclude("id");
+
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(User.class))
+                .mapNotNull(document -> document.getString("email"));
+    }
+
+    @Override
+    public Flux<User> findAll(final Collection<String> fields) {
+        return mongoTemplate.find(projected(cursorQuery(), fields), User.class);
+    }
+
+    @Override
+    public Flux<User> findPage(final String afterId, final int limit, final Collection<String> fields) {
+        Query query = projected(cursorQuery(), fields)
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .limit(limit);
+
+        if (afterId != null) {
+            query.addCriteria(Criteria.where("id").gt(afterId));
+        }
+
+        return mongoTemplate.find(query, User.class);
+    }
+
+    @Override
+    public Flux<User> findCreatedSince(final Instant since) {
+        Query query = projected(cursorQuery(), List.of("name", "email"))
+                .with(Sort.by(Sort.Direction.ASC, "id"));
+
+        if (since != null) {
+            query.addCriteria(Criteria.where("id").gte(new ObjectId(ObjectIds.minimumAt(since))));
+        }
+
+        return mongoTemplate.find(query, User.class);
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final UserPatch patch) {
+        Query query = withoutPassword(new Query(byIdAndVersion(id, expectedVersion)));
+
+        return mongoTemplate.findAndModify(query, toUpdate(patch), FindAndModifyOptions.options().returnNew(true), User.class);
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id, final Long expectedVersion) {
+        Query query = new Query();
+
+        return mongoTemplate.findAndRemove(query.addCriteria(byIdAndVersion(id, expectedVersion)), User.class);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(final String id) {
+        return mongoTemplate.exists(new Query(Criteria.where("id").is(id)), User.class);
+    }
+
+    private Update toUpdate(final UserPatch patch) {
+        final Update update = new Update();
+        if (patch.name() != null) {
+            update.set("name", patch.name());
+        }
+        if (patch.email() != null) {
+            update.set("email", patch.email());
+        }
+        if (patch.password() != null) {
+            update.set("password", patch.password());
+        }
+        return update;
+    }
+
+    private Bson upsert(final User user) {
+        final Bson update = Updates.combine(
+                Updates.set("name", user.getName()),
+                Updates.set("password", user.getPassword()),
+                Updates.inc("version", 1L)
+        );
+        // A preassigned id (the sharded repository routes by it) is kept for inserted users.
+        return user.getId() != null && ObjectId.isValid(user.getId())
+                ? Updates.combine(update, Updates.setOnInsert("_id", new ObjectId(user.getId())))
+                : update;
+    }
+
+    private Criteria byIdAndVersion(final String id, final Long expectedVersion) {
+        Criteria where = Criteria.where("id").is(id);
+        if (expectedVersion != null) {
+            where = where.and("version").is(expectedVersion);
+        }
+        return where;
+    }
+
+    private Mono<Void> findBatch(final List<MicroBatcher.Pending<String, User>> batch) {
+        final Set<String> ids = new HashSet<>();
+        batch.forEach(pending -> ids.add(pending.item()));
+
+        return findAllById(ids)
+                .collectMap(user -> ObjectIds.canonical(user.getId()))
+                .doOnNext(found -> batch.forEach(pending -> pending.success(found.get(ObjectIds.canonical(pending.item())))))
+                .then();
+    }
+
+    private Document toDocument(final User user) {
+        if (user.getVersion() == null) {
+            user.setVersion(0L);
+        }
+        Document document = new Document();
+        mongoTemplate.getConverter().write(user, document);
+        return document;
+    }
+
+    private List<User> assignIds(final List<User> users, final List<Document> documents) {
+        for (int i = 0; i < users.size(); i++) {
+            Object id = documents.get(i).get("_id");
+            if (id != null) {
+                users.get(i).setId(id.toString());
+            }
+        }
+        return users;
+    }
+
+    private BulkUpsertResult upsertResult(final List<User> users, final BulkWriteResult result,
+                                          final Map<Integer, DataAccessException> errors) {
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            users.get(upsert.getIndex()).setId(upsert.getId().asObjectId().getValue().toHexString());
+        }
+        return new BulkUpsertResult(users, result.getUpserts().size(), result.getMatchedCount(), errors);
+    }
+
+    private Mono<Map<Integer, DataAccessException>> writeErrors(final MongoBulkWriteException ex) {
+        if (ex.getWriteConcernError() != null) {
+            return Mono.error(ex);
+        }
+        return Mono.just(errors(ex));
+    }
+
+    private Map<Integer, DataAccessException> errors(final MongoBulkWriteException ex) {
+        Map<Integer, DataAccessException> errors = new HashMap<>();
+        for (BulkWriteError error : ex.getWriteErrors()) {
+            errors.put(error.getIndex(), error.getCode() == DUPLICATE_KEY_CODE
+                    ? new DuplicateKeyException(error.getMessage())
+                    : new DataIntegrityViolationException(error.getMessage()));
+        }
+        return errors;
+    }
+
+    private Query withoutPassword(final Query query) {
+        query.fields().exclude("password");
+        return query;
+    }
+
+    private Query projected(final Query query, final Collection<String> fields) {
+        fields.forEach(query.fields()::include);
+        query.fields().include("id");
+        return query;
+    }
+
+    private Query cursorQuery() {
+        return new Query().cursorBatchSize(properties.getQuery().getCursorBatchSize());
+    }
+}
@@ -0,0 +1,27 @@
+package com.mauro.projects.webflux_course.repository;
+
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+
+public final class ObjectIds {
+
+    private ObjectIds() {
+    }
+
+    /**
+     * Smallest ObjectId hex string created at the given instant. ObjectIds start with their
+     * creation second, so every id created at or after the instant sorts at or after it.
+     */
+    public static String minimumAt(final Instant instant) {
+        return String.format("%08x", instant.getEpochSecond()) + "0000000000000000";
+    }
+
+    /**
+     * The lowercase hex form of a valid ObjectId string, or the string itself otherwise. Mongo
+     * matches ids regardless of case, so lookups keyed by the returned id need this form.
+     */
+    public static String canonical(final String id) {
+        return id != null && ObjectId.isValid(id) ? new ObjectId(id).toHexString() : id;
+    }
+}
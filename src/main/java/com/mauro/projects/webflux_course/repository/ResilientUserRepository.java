@@ -0,0 +1,206 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.GatewayTimeoutException;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import com.mauro.projects.webflux_course.support.CircuitBreaker;
+import com.mauro.projects.webflux_course.support.CircuitBreaker.CallNotPermittedException;
+import com.mauro.projects.webflux_course.support.RollingPercentile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.String.format;
+
+/**
+ * Puts a deadline on every repository call and a circuit breaker in front of all of them.
+ * Monos must finish within their operation's timeout; fluxes must produce their first
+ * element within it, so long streams are not cut off by a slow consumer. Timeouts and
+ * connection failures count towards the breaker; business errors do not. findById can
+ * optionally be hedged: if the first attempt has not answered within the recent
+ * percentile latency, a second one is sent and the first signal wins.
+ */
+public class ResilientUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final UserProperties.Resilience config;
+    private final CircuitBreaker breaker;
+    private final RollingPercentile findByIdLatency;
+    private final Counter hedges;
+
+    public ResilientUserRepository(final UserRepository delegate, final UserProperties.Resilience config,
+                                   final MeterRegistry registry) {
+        this.delegate = delegate;
+        this.config = config;
+
+        final var breakerConfig = config.getCircuitBreaker();
+        this.breaker = new CircuitBreaker(
+                breakerConfig.getWindowSize(), breakerConfig.getMinimumCalls(), breakerConfig.getFailureRateThreshold(),
+                breakerConfig.getOpenDuration(), breakerConfig.getHalfOpenCalls(), ResilientUserRepository::isFailure
+        );
+
+        final var hedging = config.getHedging();
+        this.findByIdLatency = hedging.isEnabled()
+                ? new RollingPercentile(hedging.getPercentile(), hedging.getWindowSize(), 64)
+                : null;
+        this.hedges = Counter.builder("users.repository.hedges")
+                .description("Hedged second attempts sent for slow findById calls")
+                .register(registry);
+
+        Gauge.builder("users.repository.circuit.state", breaker, circuit -> circuit.state().ordinal())
+                .description("Repository circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<User> save(final User user) {
+        return mono("save", delegate.save(user));
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertAll(final List<User> users) {
+        return mono("insertAll", delegate.insertAll(users));
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertAllByEmail(final List<User> users) {
+        return mono("upsertAllByEmail", delegate.upsertAllByEmail(users));
+    }
+
+    @Override
+    public Mono<User> findById(final String id) {
+        return mono("findById", findByIdLatency == null ? delegate.findById(id) : hedgedFindById(id));
+    }
+
+    @Override
+    public Mono<User> findCompleteById(final String id) {
+        return mono("findCompleteById", delegate.findCompleteById(id));
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return flux("findAllById", delegate.findAllById(ids));
+    }
+
+    @Override
+    public Mono<User> findByEmail(final String email) {
+        return mono("findByEmail", delegate.findByEmail(email));
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(final String email) {
+        return mono("existsByEmail", delegate.existsByEmail(email));
+    }
+
+    @Override
+    public Flux<String> findAllEmails() {
+        return flux("findAllEmails", delegate.findAllEmails());
+    }
+
+    @Override
+    public Flux<User> findAll(final Collection<String> fields) {
+        return flux("findAll", delegate.findAll(fields));
+    }
+
+    @Override
+    public Flux<User> findPage(final String afterId, final int limit, final Collection<String> fields) {
+        return flux("findPage", delegate.findPage(afterId, limit, fields));
+    }
+
+    @Override
+    public Flux<User> findCreatedSince(final Instant since) {
+        return flux("findCreatedSince", delegate.findCreatedSince(since));
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final UserPatch patch) {
+        return mono("findAndModify", delegate.findAndModify(id, expectedVersion, patch));
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id, final Long expectedVersion) {
+        return mono("findAndRemove", delegate.findAndRemove(id, expectedVersion));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(final String id) {
+        return mono("existsById", delegate.existsById(id));
+    }
+
+    private <T> Mono<T> mono(final String operation, final Mono<T> source) {
+        final Duration timeout = config.timeout(operation);
+        return breaker.mono(source.timeout(timeout))
+                .onErrorMap(error -> translate(operation, timeout, error));
+    }
+
+    private <T> Flux<T> flux(final String operation, final Flux<T> source) {
+        final Duration timeout = config.timeout(operation);
+        return breaker.flux(firstSignalWithin(source, timeout))
+                .onErrorMap(error -> translate(operation, timeout, error));
+    }
+
+    /**
+     * Times only the wait for the first signal, counted from the consumer's first request.
+     * Later elements arrive at the pace the consumer asks for them, so timing them would
+     * blame the database, and the breaker, for a slow download.
+     */
+    private static <T> Flux<T> firstSignalWithin(final Flux<T> source, final Duration timeout) {
+        return Flux.defer(() -> {
+            final Sinks.Empty<Void> requested = Sinks.empty();
+            return source
+                    .timeout(requested.asMono().then(Mono.delay(timeout)), item -> Mono.never())
+                    .doOnRequest(n -> requested.tryEmitEmpty());
+        });
+    }
+
+    private Mono<User> hedgedFindById(final String id) {
+        return Mono.defer(() -> {
+            final long percentile = findByIdLatency.value();
+            final Mono<User> first = timed(delegate.findById(id));
+            if (percentile < 0) {
+                return first;
+            }
+
+            final Duration delay = Duration.ofNanos(Math.max(config.getHedging().getMinDelay().toNanos(), percentile));
+            final Mono<User> second = Mono.delay(delay)
+                    .doOnNext(tick -> hedges.increment())
+                    .then(Mono.defer(() -> timed(delegate.findById(id))));
+            return Mono.firstWithSignal(first, second);
+        });
+    }
+
+    private Mono<User> timed(final Mono<User> attempt) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return attempt.doOnSuccess(user -> findByIdLatency.record(System.nanoTime() - start));
+        });
+    }
+
+    private Throwable translate(final String operation, final Duration timeout, final Throwable error) {
+        if (error instanceof TimeoutException) {
+            return new GatewayTimeoutException(format("User repository %s did not answer within %s", operation, timeout));
+        }
+        if (error instanceof CallNotPermittedException notPermitted) {
+            return new ServiceUnavailableException("User repository is unavailable, try again later", notPermitted.retryAfter());
+        }
+        return error;
+    }
+
+    private static boolean isFailure(final Throwable error) {
+        return error instanceof TimeoutException
+                || error instanceof DataAccessResourceFailureException
+                || error instanceof TransientDataAccessException;
+    }
+}
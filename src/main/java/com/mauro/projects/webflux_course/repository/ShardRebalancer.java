@@ -0,0 +1,78 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds shards to a ShardedUserRepository while it keeps serving. The new shard joins the
+ * ring at once; then every existing shard is scanned by id and the users the new ring
+ * assigns elsewhere are moved, a few at a time. Consistent hashing means only the users
+ * taken over by the new shard move. If a pass fails the ring stays in rebalancing mode, so
+ * reads still find users on their previous shard, and running the pass again resumes it.
+ * The ring lives in this process only, so a rebalance is only safe while this is the one
+ * instance serving users; the configuration refuses joining shards unless
+ * users.sharding.single-instance says so.
+ */
+public class ShardRebalancer {
+
+    private final ShardedUserRepository repository;
+    private final Map<String, UserRepository> joining;
+    private final int concurrency;
+    private final Counter moved;
+
+    public ShardRebalancer(final ShardedUserRepository repository, final Map<String, UserRepository> joining,
+                           final int concurrency, final MeterRegistry registry) {
+        this.repository = repository;
+        this.joining = new LinkedHashMap<>(joining);
+        this.concurrency = concurrency;
+        this.moved = Counter.builder("users.sharding.moved")
+                .description("Users moved to another shard by a rebalance")
+                .register(registry);
+    }
+
+    public ShardedUserRepository repository() {
+        return repository;
+    }
+
+    public Map<String, UserRepository> joining() {
+        return joining;
+    }
+
+    /**
+     * Adds the configured joining shards one after the other and emits the number of users
+     * moved.
+     */
+    public Mono<Long> joinAll() {
+        return Flux.fromIterable(joining.entrySet())
+                .concatMap(shard -> addShard(shard.getKey(), shard.getValue()))
+                .reduce(0L, Long::sum);
+    }
+
+    public Mono<Long> addShard(final String name, final UserRepository shard) {
+        return Mono.defer(() -> {
+            final List<UserRepository> sources = new ArrayList<>(repository.shards().values());
+            repository.beginRebalance(name, shard);
+            return rebalance(sources);
+        });
+    }
+
+    private Mono<Long> rebalance(final List<UserRepository> sources) {
+        return Flux.fromIterable(sources)
+                .concatMap(source -> source.findAll(List.of())
+                        .map(User::getId)
+                        .filter(repository::moving)
+                        .flatMap(repository::move, concurrency)
+                        .doOnNext(user -> moved.increment())
+                        .count())
+                .reduce(0L, Long::sum)
+                .doOnSuccess(count -> repository.finishRebalance());
+    }
+}
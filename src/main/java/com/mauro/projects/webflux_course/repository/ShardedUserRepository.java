@@ -0,0 +1,452 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.repository.EmailDirectory.Claim;
+import com.mauro.projects.webflux_course.service.exception.DuplicateKeyMessages;
+import com.mauro.projects.webflux_course.support.ConsistentHashRing;
+import com.mauro.projects.webflux_course.support.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Spreads users over several databases by a consistent hash of their id, in its canonical
+ * lowercase form so an id written in uppercase still finds its shard. Ids are assigned
+ * here before the first write, so every user has a home shard from the start. Emails are
+ * kept unique across shards by claiming them in the EmailDirectory before writing, in one
+ * round trip per batch, and releasing them when the write fails or the user goes away.
+ * Single-user calls go to one shard; findAll merges the shard streams as they come, and the
+ * id-ordered queries merge them in id order so pages and exports keep their order.
+ * While a shard is being added, a user whose owner changed is moved before any write to it,
+ * and reads try the new owner first and fall back to the previous one.
+ */
+@Slf4j
+public class ShardedUserRepository implements UserRepository {
+
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+
+    private final EmailDirectory directory;
+    private final SingleFlight<String, User> moves;
+    private volatile Topology topology;
+
+    public ShardedUserRepository(final Map<String, UserRepository> shards, final int virtualNodes,
+                                 final EmailDirectory directory, final MeterRegistry registry) {
+        this.directory = directory;
+        this.moves = new SingleFlight<>("shard-moves", registry);
+        this.topology = new Topology(new ConsistentHashRing<>(shards, virtualNodes), null);
+    }
+
+    @Override
+    public Mono<User> save(final User user) {
+        return Mono.defer(() -> {
+            final boolean created = user.getId() == null;
+            if (created) {
+                user.setId(new ObjectId().toHexString());
+            }
+            final String id = user.getId();
+
+            final Mono<User> saved = claim(user.getEmail(), id)
+                    .then(writable(id))
+                    .flatMap(shard -> shard.save(user));
+            return created
+                    ? saved.onErrorResume(ex -> release(user.getEmail(), id).then(Mono.error(ex)))
+                    : saved;
+        });
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertAll(final List<User> users) {
+        return Mono.defer(() -> {
+            users.stream().filter(user -> user.getId() == null).forEach(user -> user.setId(new ObjectId().toHexString()));
+            final Map<Integer, DataAccessException> errors = new ConcurrentHashMap<>();
+            final List<Integer> positions = IntStream.range(0, users.size())
+                    .filter(i -> users.get(i).getEmail() != null)
+                    .boxed()
+                    .toList();
+            final List<Claim> claims = positions.stream()
+                    .map(i -> new Claim(users.get(i).getEmail(), users.get(i).getId()))
+                    .toList();
+
+            return directory.claimAll(claims)
+                    .flatMap(refused -> {
+                        final Map<Integer, Claim> claimed = new HashMap<>();
+                        for (int i = 0; i < positions.size(); i++) {
+                            if (refused.contains(i)) {
+                                errors.put(positions.get(i), new DuplicateKeyException(DuplicateKeyMessages.forEmail(claims.get(i).email())));
+                            } else {
+                                claimed.put(positions.get(i), claims.get(i));
+                            }
+                        }
+
+                        final List<Integer> accepted = IntStream.range(0, users.size())
+                                .filter(i -> !errors.containsKey(i))
+                                .boxed()
+                                .toList();
+                        return writeByShard(byOwner(accepted, i -> users.get(i).getId()), claimed, errors,
+                                (shard, group) -> shard.insertAll(group.stream().map(users::get).toList()),
+                                BulkInsertResult::errors);
+                    })
+                    .map(results -> new BulkInsertResult(users, Map.copyOf(errors)));
+        });
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertAllByEmail(final List<User> users) {
+        return Mono.defer(() -> {
+            final Map<Integer, DataAccessException> errors = new ConcurrentHashMap<>();
+
+            return resolveIds(users, errors)
+                    .flatMap(created -> Flux.range(0, users.size())
+                            .filter(i -> !errors.containsKey(i))
+                            .concatMap(i -> writable(users.get(i).getId()).map(shard -> Map.entry(i, shard)))
+                            .collect(Collectors.groupingBy(Map.Entry::getValue, LinkedHashMap::new,
+                                    Collectors.mapping(Map.Entry::getKey, Collectors.toList())))
+                            .onErrorResume(ex -> directory.releaseAll(unwritten(created, Set.of())).then(Mono.error(ex)))
+                            .flatMap(groups -> writeByShard(groups, created, errors,
+                                    (shard, group) -> shard.upsertAllByEmail(group.stream().map(users::get).toList()),
+                                    BulkUpsertResult::errors)))
+                    .map(results -> new BulkUpsertResult(users,
+                            results.stream().mapToInt(BulkUpsertResult::inserted).sum(),
+                            results.stream().mapToInt(BulkUpsertResult::updated).sum(),
+                            Map.copyOf(errors)));
+        });
+    }
+
+    @Override
+    public Mono<User> findById(final String id) {
+        return read(id, shard -> shard.findById(id));
+    }
+
+    @Override
+    public Mono<User> findCompleteById(final String id) {
+        return read(id, shard -> shard.findCompleteById(id));
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return Flux.defer(() -> {
+            final Topology current = topology;
+            final Flux<User> found = scatter(current.ring(), ids);
+            if (current.previous() == null) {
+                return found;
+            }
+
+            final Set<String> seen = ConcurrentHashMap.newKeySet();
+            return found.doOnNext(user -> seen.add(user.getId()))
+                    .concatWith(Flux.defer(() -> scatter(current.previous(), ids.stream()
+                            .filter(id -> !seen.contains(id) && current.moving(id))
+                            .toList())));
+        });
+    }
+
+    @Override
+    public Mono<User> findByEmail(final String email) {
+        return directory.idOf(email).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(final String email) {
+        return directory.idOf(email).hasElement();
+    }
+
+    @Override
+    public Flux<String> findAllEmails() {
+        return directory.emails();
+    }
+
+    /**
+     * Shard streams are merged unordered. During a rebalance a user caught between being
+     * copied and being removed from its previous shard can show up twice.
+     */
+    @Override
+    public Flux<User> findAll(final Collection<String> fields) {
+        return Flux.defer(() -> Flux.merge(topology.shards().stream().map(shard -> shard.findAll(fields)).toList()));
+    }
+
+    @Override
+    public Flux<User> findPage(final String afterId, final int limit, final Collection<String> fields) {
+        return inIdOrder(shard -> shard.findPage(afterId, limit, fields)).take(limit, true);
+    }
+
+    @Override
+    public Flux<User> findCreatedSince(final Instant since) {
+        return inIdOrder(shard -> shard.findCreatedSince(since));
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final UserPatch patch) {
+        final Mono<User> write = writable(id).flatMap(shard -> shard.findAndModify(id, expectedVersion, patch));
+        final String email = patch.email();
+        if (email == null) {
+            return write;
+        }
+
+        return findById(id).flatMap(current -> email.equals(current.getEmail())
+                ? write
+                : claim(email, id)
+                        .then(write)
+                        .flatMap(updated -> release(current.getEmail(), id).thenReturn(updated))
+                        .switchIfEmpty(Mono.defer(() -> release(email, id).then(Mono.empty())))
+                        .onErrorResume(ex -> release(email, id).then(Mono.error(ex))));
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id, final Long expectedVersion) {
+        return writable(id)
+                .flatMap(shard -> shard.findAndRemove(id, expectedVersion))
+                .flatMap(removed -> release(removed.getEmail(), id).thenReturn(removed));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(final String id) {
+        return Mono.defer(() -> {
+            final Topology current = topology;
+            final Mono<Boolean> exists = current.ring().nodeFor(ObjectIds.canonical(id)).existsById(id);
+            return current.moving(id)
+                    ? exists.flatMap(found -> found ? Mono.just(true) : current.previous().nodeFor(ObjectIds.canonical(id)).existsById(id))
+                    : exists;
+        });
+    }
+
+    public Map<String, UserRepository> shards() {
+        return topology.ring().nodes();
+    }
+
+    /**
+     * Routes by a ring that includes the new shard from now on, with the current ring kept
+     * as the previous owner of every user until finishRebalance is called.
+     */
+    public synchronized void beginRebalance(final String name, final UserRepository shard) {
+        final Topology current = topology;
+        if (current.previous() != null) {
+            throw new IllegalStateException("A rebalance is already running");
+        }
+        if (current.ring().nodes().containsKey(name)) {
+            throw new IllegalArgumentException("Shard " + name + " is already part of the ring");
+        }
+        topology = new Topology(current.ring().with(name, shard), current.ring());
+    }
+
+    public synchronized void finishRebalance() {
+        topology = new Topology(topology.ring(), null);
+    }
+
+    public boolean moving(final String id) {
+        return topology.moving(id);
+    }
+
+    /**
+     * Copies the user, password and version included, to its new owner and then removes it
+     * from the previous one. A duplicate id on the new owner means an earlier attempt already
+     * copied it. Concurrent moves of the same user share one flight.
+     */
+    public Mono<User> move(final String id) {
+        return Mono.defer(() -> {
+            final Topology current = topology;
+            if (!current.moving(id)) {
+                return Mono.empty();
+            }
+
+            final UserRepository from = current.previous().nodeFor(ObjectIds.canonical(id));
+            final UserRepository to = current.ring().nodeFor(ObjectIds.canonical(id));
+            return moves.execute(ObjectIds.canonical(id), key -> from.findCompleteById(key)
+                    .flatMap(user -> to.insertAll(List.of(user.toBuilder().build()))
+                            .flatMap(result -> result.failed(0) && !(result.errors().get(0) instanceof DuplicateKeyException)
+                                    ? Mono.error(result.errors().get(0))
+                                    : from.findAndRemove(key))
+                            .thenReturn(user)));
+        });
+    }
+
+    private <T> Mono<T> read(final String id, final Function<UserRepository, Mono<T>> query) {
+        return Mono.defer(() -> {
+            final Topology current = topology;
+            final Mono<T> found = query.apply(current.ring().nodeFor(ObjectIds.canonical(id)));
+            return current.moving(id)
+                    ? found.switchIfEmpty(Mono.defer(() -> query.apply(current.previous().nodeFor(ObjectIds.canonical(id)))))
+                    : found;
+        });
+    }
+
+    private Mono<UserRepository> writable(final String id) {
+        return Mono.defer(() -> {
+            final UserRepository owner = topology.ring().nodeFor(ObjectIds.canonical(id));
+            return move(id).then(Mono.just(owner));
+        });
+    }
+
+    private Flux<User> inIdOrder(final Function<UserRepository, Flux<User>> query) {
+        return Flux.defer(() -> {
+                    @SuppressWarnings("unchecked")
+                    final Flux<User>[] sources = topology.shards().stream().map(query).toArray(Flux[]::new);
+                    return Flux.mergeComparing(BY_ID, sources);
+                })
+                .distinctUntilChanged(User::getId);
+    }
+
+    private Flux<User> scatter(final ConsistentHashRing<UserRepository> ring, final Collection<String> ids) {
+        final Map<String, List<String>> groups = ids.stream()
+                .distinct()
+                .collect(Collectors.groupingBy(
+                        id -> ring.nameFor(ObjectIds.canonical(id)), LinkedHashMap::new, Collectors.toList()
+                ));
+        return Flux.fromIterable(groups.entrySet())
+                .flatMap(group -> ring.nodes().get(group.getKey()).findAllById(group.getValue()));
+    }
+
+    private <T> Map<UserRepository, List<T>> byOwner(final List<T> items, final Function<T, String> id) {
+        final ConsistentHashRing<UserRepository> ring = topology.ring();
+        return items.stream().collect(Collectors.groupingBy(
+                item -> ring.nodeFor(ObjectIds.canonical(id.apply(item))), LinkedHashMap::new, Collectors.toList()
+        ));
+    }
+
+    /**
+     * Writes each shard's group and records the errors by batch position. A group whose write
+     * fails as a whole fails each of its positions; the batch only fails when every group did.
+     * Claims made for the batch are released unless a user holding them was written, also
+     * when the caller cancels, which is how an outer timeout arrives.
+     */
+    private <R> Mono<List<R>> writeByShard(final Map<UserRepository, List<Integer>> groups,
+                                           final Map<Integer, Claim> claims,
+                                           final Map<Integer, DataAccessException> errors,
+                                           final BiFunction<UserRepository, List<Integer>, Mono<R>> write,
+                                           final Function<R, Map<Integer, DataAccessException>> failed) {
+        final Set<Integer> written = ConcurrentHashMap.newKeySet();
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        return Flux.fromIterable(groups.entrySet())
+                .flatMap(group -> {
+                    final List<Integer> positions = group.getValue();
+                    return write.apply(group.getKey(), positions)
+                            .doOnNext(result -> {
+                                final Map<Integer, DataAccessException> itemErrors = failed.apply(result);
+                                for (int i = 0; i < positions.size(); i++) {
+                                    if (itemErrors.containsKey(i)) {
+                                        errors.put(positions.get(i), itemErrors.get(i));
+                                    } else {
+                                        written.add(positions.get(i));
+                                    }
+                                }
+                            })
+                            .onErrorResume(ex -> {
+                                failures.add(ex);
+                                final DataAccessException error = ex instanceof DataAccessException dataAccess
+                                        ? dataAccess
+                                        : new DataAccessResourceFailureException(ex.getMessage(), ex);
+                                positions.forEach(position -> errors.put(position, error));
+                                return Mono.empty();
+                            });
+                })
+                .collectList()
+                .flatMap(results -> directory.releaseAll(unwritten(claims, written))
+                        .then(results.isEmpty() && !failures.isEmpty() ? Mono.error(failures.get(0)) : Mono.just(results)))
+                .doOnCancel(() -> directory.releaseAll(unwritten(claims, written))
+                        .subscribe(null, error -> log.warn("Could not release the emails of a cancelled batch", error)));
+    }
+
+    private static List<Claim> unwritten(final Map<Integer, Claim> claims, final Set<Integer> written) {
+        final Set<Claim> kept = written.stream().map(claims::get).filter(Objects::nonNull).collect(Collectors.toSet());
+        return claims.values().stream().distinct().filter(claim -> !kept.contains(claim)).toList();
+    }
+
+    /**
+     * Sets each user's id to the one already registered for its email, or claims the email
+     * for a new id, and emits the claims made here by position. Repeated emails share one id.
+     * Losing a claim to a concurrent upsert means the winner's id is used; a winner that is
+     * already gone again fails the position.
+     */
+    private Mono<Map<Integer, Claim>> resolveIds(final List<User> users, final Map<Integer, DataAccessException> errors) {
+        final List<String> emails = users.stream().map(User::getEmail).distinct().toList();
+
+        return directory.idsOf(emails).flatMap(known -> {
+            final List<Claim> fresh = emails.stream()
+                    .filter(email -> !known.containsKey(email))
+                    .map(email -> new Claim(email, new ObjectId().toHexString()))
+                    .toList();
+
+            return directory.claimAll(fresh)
+                    .flatMap(refused -> directory.idsOf(refused.stream().map(i -> fresh.get(i).email()).toList())
+                            .map(winners -> {
+                                final Map<String, String> ids = new HashMap<>(known);
+                                final Map<String, Claim> claimed = new HashMap<>();
+                                for (int i = 0; i < fresh.size(); i++) {
+                                    if (!refused.contains(i)) {
+                                        ids.put(fresh.get(i).email(), fresh.get(i).id());
+                                        claimed.put(fresh.get(i).email(), fresh.get(i));
+                                    }
+                                }
+                                ids.putAll(winners);
+
+                                final Map<Integer, Claim> created = new HashMap<>();
+                                for (int i = 0; i < users.size(); i++) {
+                                    final User user = users.get(i);
+                                    final String id = ids.get(user.getEmail());
+                                    if (id == null) {
+                                        errors.put(i, new ConcurrencyFailureException(
+                                                "E-mail " + user.getEmail() + " was released while being claimed"));
+                                        continue;
+                                    }
+                                    user.setId(id);
+                                    if (claimed.containsKey(user.getEmail())) {
+                                        created.put(i, claimed.get(user.getEmail()));
+                                    }
+                                }
+                                return created;
+                            }));
+        });
+    }
+
+    private Mono<Void> claim(final String email, final String id) {
+        if (email == null) {
+            return Mono.empty();
+        }
+        return directory.claim(email, id)
+                .flatMap(claimed -> claimed
+                        ? Mono.<Void>empty()
+                        : Mono.error(new DuplicateKeyException(DuplicateKeyMessages.forEmail(email))));
+    }
+
+    private Mono<Void> release(final String email, final String id) {
+        return email == null ? Mono.empty() : directory.release(email, id);
+    }
+
+    private record Topology(ConsistentHashRing<UserRepository> ring, ConsistentHashRing<UserRepository> previous) {
+
+        private boolean moving(final String id) {
+            final String canonical = ObjectIds.canonical(id);
+            return previous != null && !previous.nameFor(canonical).equals(ring.nameFor(canonical));
+        }
+
+        private Collection<UserRepository> shards() {
+            final Set<UserRepository> shards = new HashSet<>(ring.nodes().values());
+            if (previous != null) {
+                shards.addAll(previous.nodes().values());
+            }
+            return shards;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.mauro.projects.webflux_course.repository;
+
+/**
+ * The fields to change on a stored user; null fields are left as they are. The password is
+ * stored as given, so callers hash it first.
+ */
+public record UserPatch(String name, String email, String password) {
+
+    public boolean isEmpty() {
+        return name == null && email == null && password == null;
+    }
+
+    public UserPatch withPassword(final String password) {
+        return new UserPatch(name, email, password);
+    }
+}
@@ -1,38 +1,54 @@
 package com.mauro.projects.webflux_course.repository;
 
 import com.mauro.projects.webflux_course.entity.User;
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-@Repository
-@RequiredArgsConstructor
-public class UserRepository {
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
-    private final ReactiveMongoTemplate mongoTemplate;
+public interface UserRepository {
 
-    public Mono<User> save(final User user) {
-        return mongoTemplate.save(user);
-    }
+    Mono<User> save(User user);
 
-    public Mono<User> findById(String id) {
-        return mongoTemplate.findById(id, User.class);
-    }
+    Mono<BulkInsertResult> insertAll(List<User> users);
 
+    Mono<BulkUpsertResult> upsertAllByEmail(List<User> users);
 
-    public Flux<User> findAll() {
-        return mongoTemplate.findAll(User.class);
-    }
+    Mono<User> findById(String id);
+
+    /**
+     * The stored document with every field, password included, for moving a user between
+     * databases. Everything else reads users without their password.
+     */
+    Mono<User> findCompleteById(String id);
+
+    Flux<User> findAllById(Collection<String> ids);
+
+    Mono<User> findByEmail(String email);
+
+    Mono<Boolean> existsByEmail(String email);
 
+    Flux<String> findAllEmails();
 
-    public Mono<User> findAndRemove(String id) {
-        Query query = new Query();
-        Criteria where = Criteria.where("id").is(id);
+    Flux<User> findAll(Collection<String> fields);
 
-        return mongoTemplate.findAndRemove(query.addCriteria(where), User.class);
+    Flux<User> findPage(String afterId, int limit, Collection<String> fields);
+
+    Flux<User> findCreatedSince(Instant since);
+
+    Mono<User> findAndModify(String id, Long expectedVersion, UserPatch patch);
+
+    default Mono<User> findAndModify(String id, UserPatch patch) {
+        return findAndModify(id, null, patch);
     }
+
+    Mono<User> findAndRemove(String id, Long expectedVersion);
+
+    default Mono<User> findAndRemove(String id) {
+        return findAndRemove(id, null);
+    }
+
+    Mono<Boolean> existsById(String id);
 }
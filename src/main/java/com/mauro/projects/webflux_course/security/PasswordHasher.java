@@ -0,0 +1,79 @@
+package com.mauro.projects.webflux_course.security;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class PasswordHasher implements DisposableBean {
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final Timer hashTimer;
+
+    @Autowired
+    public PasswordHasher(final UserProperties properties, final MeterRegistry registry) {
+        this(new BCryptPasswordEncoder(properties.getHashing().getStrength()), properties.getHashing(), registry);
+    }
+
+    PasswordHasher(final PasswordEncoder encoder, final UserProperties.Hashing config, final MeterRegistry registry) {
+        final AtomicInteger threads = new AtomicInteger();
+
+        this.encoder = encoder;
+        this.executor = new ThreadPoolExecutor(
+                config.getThreads(), config.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.scheduler = Schedulers.fromExecutorService(executor, "password-hashing");
+        this.hashTimer = Timer.builder("users.password.hash")
+                .description("Time spent hashing a password, excluding queue wait")
+                .register(registry);
+
+        Gauge.builder("users.password.hash.queue", executor, pool -> pool.getQueue().size())
+                .description("Passwords waiting for a hashing thread")
+                .register(registry);
+        Gauge.builder("users.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads currently busy")
+                .register(registry);
+    }
+
+    public Mono<String> hash(final String rawPassword) {
+        return Mono.fromCallable(() -> hashTimer.recordCallable(() -> encoder.encode(rawPassword)))
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, ex -> new ServiceUnavailableException(
+                        "Password hashing is saturated, try again later"
+                ));
+    }
+
+    public int parallelism() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,30 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * A batch or import row after password hashing. When the hashing pool turns the row away
+ * it carries the error instead, so only that row fails rather than the whole stream.
+ */
+record HashedRow(long index, UserRequest request, UserRequest hashed, String error) {
+
+    static Mono<HashedRow> of(final long index, final UserRequest request, final Mono<UserRequest> hashing) {
+        return hashing
+                .map(hashed -> new HashedRow(index, request, hashed, null))
+                .onErrorResume(ServiceUnavailableException.class,
+                        ex -> Mono.just(new HashedRow(index, request, null, ex.getMessage())));
+    }
+
+    boolean rejected() {
+        return hashed == null;
+    }
+
+    UserBatchItemResponse rejection() {
+        return UserBatchItemResponse.failed(index, request.email(), error, List.of());
+    }
+}
@@ -0,0 +1,23 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import reactor.core.publisher.Mono;
+
+/**
+ * The single place where a missing user becomes an ObjectNotFoundException. The error is
+ * only created when the lookup comes back empty, so found users pay nothing for it.
+ */
+public final class NotFound {
+
+    private NotFound() {
+    }
+
+    public static <T> Mono<T> byId(final Mono<T> lookup, final String id) {
+        return lookup.switchIfEmpty(Mono.error(() -> ObjectNotFoundException.forId(id, User.class)));
+    }
+
+    public static <T> Mono<T> byEmail(final String email) {
+        return Mono.error(() -> ObjectNotFoundException.forEmail(email, User.class));
+    }
+}
@@ -0,0 +1,39 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.mauro.projects.webflux_course.repository.ObjectIds;
+import com.mauro.projects.webflux_course.service.exception.InvalidPageTokenException;
+import org.bson.types.ObjectId;
+
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public final class PageToken {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private PageToken() {
+    }
+
+    public static String encode(final String lastId) {
+        return ENCODER.encodeToString(lastId.getBytes(UTF_8));
+    }
+
+    public static String decode(final String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        final String lastId;
+        try {
+            lastId = new String(DECODER.decode(token), UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPageTokenException("Invalid page token: " + token);
+        }
+        // Mongo only compares ids of the same type, so any other value would page to nothing.
+        if (!ObjectId.isValid(lastId)) {
+            throw new InvalidPageTokenException("Invalid page token: " + token);
+        }
+        return ObjectIds.canonical(lastId);
+    }
+}
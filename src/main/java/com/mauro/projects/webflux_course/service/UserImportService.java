@@ -0,0 +1,164 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mauro.projects.webflux_course.cache.RegisteredEmails;
+import com.mauro.projects.webflux_course.cache.UserCache;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.FieldErrorResponse;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.model.response.UserImportProgress;
+import com.mauro.projects.webflux_course.repository.BulkUpsertResult;
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.UserRepository;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.exception.DuplicateKeyMessages;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports NDJSON lines in chunks: each line is parsed and validated on its own, valid rows
+ * are upserted by email with one bulk write per chunk, and a progress entry with running
+ * totals and the rejected lines of the chunk is emitted as each chunk finishes. At most
+ * import-concurrency chunks are in flight, so memory is bounded by chunk size, not file size.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserImportService {
+
+    private final UserRepository repository;
+    private final ChangeCounterRepository changeCounter;
+    private final UserMapper mapper;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final UserProperties properties;
+    private final UserCache cache;
+    private final PasswordHasher passwordHasher;
+    private final RegisteredEmails registeredEmails;
+
+    public Flux<UserImportProgress> importUsers(final Flux<String> lines) {
+        final var batch = properties.getBatch();
+
+        return Flux.defer(() -> {
+            final Totals totals = new Totals();
+            return lines.index((index, line) -> Tuples.of(index + 1, line))
+                    .filter(line -> !line.getT2().isBlank())
+                    .buffer(batch.getChunkSize())
+                    .flatMapSequential(this::importChunk, batch.getImportConcurrency(), 1)
+                    .map(totals::add);
+        });
+    }
+
+    private Mono<ChunkResult> importChunk(final List<Tuple2<Long, String>> chunk) {
+        final List<UserBatchItemResponse> rejected = new ArrayList<>();
+        final List<Tuple2<Long, UserRequest>> accepted = new ArrayList<>();
+
+        for (Tuple2<Long, String> line : chunk) {
+            final UserRequest request;
+            try {
+                request = objectMapper.readValue(line.getT2(), UserRequest.class);
+            } catch (JsonProcessingException ex) {
+                rejected.add(UserBatchItemResponse.failed(line.getT1(), null, "Malformed JSON line", List.of()));
+                continue;
+            }
+
+            final Set<ConstraintViolation<UserRequest>> violations = validator.validate(request);
+            if (violations.isEmpty()) {
+                accepted.add(Tuples.of(line.getT1(), request));
+            } else {
+                rejected.add(UserBatchItemResponse.failed(
+                        line.getT1(), request.email(), "Error on validation attributes", fieldErrors(violations)
+                ));
+            }
+        }
+
+        return Flux.fromIterable(accepted)
+                .flatMapSequential(item -> HashedRow.of(item.getT1(), item.getT2(), passwordHasher.hash(item.getT2().password())
+                                .map(hash -> new UserRequest(item.getT2().name(), item.getT2().email(), hash))),
+                        passwordHasher.parallelism())
+                .collectList()
+                .flatMap(rows -> {
+                    final List<HashedRow> hashed = new ArrayList<>();
+                    for (HashedRow row : rows) {
+                        if (row.rejected()) {
+                            rejected.add(row.rejection());
+                        } else {
+                            hashed.add(row);
+                        }
+                    }
+
+                    return repository.upsertAllByEmail(hashed.stream().map(row -> mapper.toEntity(row.hashed())).toList())
+                            .flatMap(this::recordChanges)
+                            .map(result -> {
+                                for (int i = 0; i < hashed.size(); i++) {
+                                    if (result.failed(i)) {
+                                        rejected.add(UserBatchItemResponse.failed(
+                                                hashed.get(i).index(), hashed.get(i).request().email(), message(result.errors().get(i)), List.of()
+                                        ));
+                                    } else {
+                                        registeredEmails.add(hashed.get(i).request().email());
+                                    }
+                                }
+                                return new ChunkResult(chunk.size(), chunk.size() - rejected.size(), rejected);
+                            });
+                });
+    }
+
+    private Mono<BulkUpsertResult> recordChanges(final BulkUpsertResult result) {
+        if (result.updated() > 0) {
+            cache.invalidateAll();
+        }
+        if (result.inserted() + result.updated() == 0) {
+            return Mono.just(result);
+        }
+        return changeCounter.increment(ChangeCounterRepository.USERS)
+                .doOnError(error -> log.warn("Could not record change on the user collection", error))
+                .onErrorResume(error -> Mono.empty())
+                .thenReturn(result);
+    }
+
+    private String message(final DataAccessException error) {
+        return error instanceof DuplicateKeyException
+                ? DuplicateKeyMessages.resolve(error.getMessage())
+                : error.getMessage();
+    }
+
+    private List<FieldErrorResponse> fieldErrors(final Set<ConstraintViolation<UserRequest>> violations) {
+        return violations.stream()
+                .map(violation -> new FieldErrorResponse(violation.getPropertyPath().toString(), violation.getMessage()))
+                .toList();
+    }
+
+    private record ChunkResult(int lines, int accepted, List<UserBatchItemResponse> rejections) {
+    }
+
+    private static final class Totals {
+
+        private long lines;
+        private long accepted;
+        private long rejected;
+
+        private UserImportProgress add(final ChunkResult chunk) {
+            lines += chunk.lines();
+            accepted += chunk.accepted();
+            rejected += chunk.rejections().size();
+            return new UserImportProgress(lines, accepted, rejected, chunk.rejections());
+        }
+    }
+}
@@ -1,55 +1,253 @@
 package com.mauro.projects.webflux_course.service;
 
+import com.mauro.projects.webflux_course.cache.RegisteredEmails;
+import com.mauro.projects.webflux_course.cache.UserCache;
+import com.mauro.projects.webflux_course.config.UserProperties;
 import com.mauro.projects.webflux_course.entity.User;
 import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserFields;
 import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.FieldErrorResponse;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.repository.BulkInsertResult;
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.UserPatch;
 import com.mauro.projects.webflux_course.repository.UserRepository;
-import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.exception.DuplicateKeyMessages;
+import com.mauro.projects.webflux_course.service.exception.PreconditionFailedException;
+import com.mauro.projects.webflux_course.support.SingleFlight;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import static java.lang.String.format;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
+    private static final Comparator<UserBatchItemResponse> BY_INDEX = Comparator.comparingLong(UserBatchItemResponse::index);
+
     private final UserRepository repository;
+    private final ChangeCounterRepository changeCounter;
     private final UserMapper mapper;
+    private final Validator validator;
+    private final UserProperties properties;
+    private final UserCache cache;
+    private final SingleFlight<String, User> findByIdFlight;
+    private final PasswordHasher passwordHasher;
+    private final RegisteredEmails registeredEmails;
+    private final UserWriteBuffer writeBuffer;
 
     public Mono<User> save(final UserRequest request) {
-      return repository.save(mapper.toEntity(request));
+      return rejectKnownEmail(request.email())
+              .then(Mono.defer(() -> hashPassword(request)))
+              .map(mapper::toEntity)
+              .flatMap(this::insert)
+              .doOnNext(cache::put)
+              .doOnNext(user -> registeredEmails.add(user.getEmail()));
 
     }
 
+    public Flux<UserBatchItemResponse> saveAll(final Flux<UserRequest> requests) {
+        return requests.index()
+                .buffer(properties.getBatch().getChunkSize())
+                .concatMap(this::saveChunk);
+    }
+
+    public Mono<Long> collectionVersion() {
+        return changeCounter.current(ChangeCounterRepository.USERS);
+    }
+
     public Mono<User> findById(String id) {
-        return handleNotFound(repository.findById(id), id);
+        return NotFound.byId(cache.get(id, key -> findByIdFlight.execute(key, repository::findById)), id);
+    }
+
+
+    public Mono<User> findByEmail(final String email) {
+        return repository.findByEmail(email).switchIfEmpty(NotFound.byEmail(email));
     }
 
+    public Mono<Boolean> existsByEmail(final String email) {
+        return repository.existsByEmail(email);
+    }
 
-    public Flux<User> findAll() {
-        return repository.findAll();
+    public Flux<User> findAll(final UserFields fields) {
+        return repository.findAll(fields.names());
     }
 
-    public Mono<User> update(final String id, final UserRequest request) {
-        return findById(id)
-                .map(entity -> mapper.toEntity(request, entity))
-                .flatMap(repository::save);
+    public Flux<User> findPage(final String token, final int limit, final UserFields fields) {
+        return Flux.defer(() -> repository.findPage(PageToken.decode(token), limit, fields.names()));
     }
 
-    public Mono<User> delete(final String id) {
-        return handleNotFound(repository.findAndRemove(id) , id);
+    public Flux<User> export(final Instant since) {
+        return repository.findCreatedSince(since);
     }
 
-    private <T> Mono<T> handleNotFound(Mono<T> mono, String id) {
-        return mono.switchIfEmpty(Mono.error(
-                new ObjectNotFoundException(
-                        format("Object not found. Id: %s, Type: %s", id, User.class.getSimpleName())
-                )
-        ));
+    public Mono<User> update(final String id, final UserRequest request, final Long expectedVersion) {
+        final UserPatch patch = toPatch(request);
+        if (patch.isEmpty()) {
+            return findById(id).flatMap(entity -> checkVersion(entity, expectedVersion));
+        }
+        final Mono<UserPatch> hashed = patch.password() == null
+                ? Mono.just(patch)
+                : passwordHasher.hash(patch.password()).map(patch::withPassword);
+        return hashed
+                .flatMap(changes -> handleConditional(
+                        repository.findAndModify(id, expectedVersion, changes), id, expectedVersion
+                ))
+                .doOnNext(cache::put)
+                .doOnNext(user -> registeredEmails.add(user.getEmail()))
+                .flatMap(this::recordChange);
     }
 
+    public Mono<User> delete(final String id, final Long expectedVersion) {
+        return handleConditional(repository.findAndRemove(id, expectedVersion), id, expectedVersion)
+                .doFinally(signal -> cache.invalidate(id))
+                .flatMap(this::recordChange);
+    }
 
+    private Mono<User> checkVersion(final User entity, final Long expectedVersion) {
+        if (expectedVersion != null && !Objects.equals(expectedVersion, entity.getVersion())) {
+            return Mono.error(preconditionFailed(entity.getId()));
+        }
+        return Mono.just(entity);
+    }
+
+    private Mono<User> handleConditional(final Mono<User> mono, final String id, final Long expectedVersion) {
+        if (expectedVersion == null) {
+            return NotFound.byId(mono, id);
+        }
+        return mono.switchIfEmpty(Mono.defer(() -> repository.existsById(id)
+                .flatMap(exists -> exists
+                        ? Mono.<User>error(preconditionFailed(id))
+                        : NotFound.byId(Mono.<User>empty(), id))));
+    }
+
+    private PreconditionFailedException preconditionFailed(final String id) {
+        return new PreconditionFailedException(
+                format("Version mismatch. Id: %s, Type: %s", id, User.class.getSimpleName())
+        );
+    }
+
+    private Mono<User> insert(final User user) {
+        if (writeBuffer.isEnabled()) {
+            return writeBuffer.insert(user);
+        }
+        return repository.save(user).flatMap(this::recordChange);
+    }
+
+    private Mono<Void> rejectKnownEmail(final String email) {
+        if (email == null || !registeredEmails.mightContain(email)) {
+            return Mono.empty();
+        }
+        return repository.existsByEmail(email)
+                .flatMap(exists -> exists
+                        ? Mono.error(new DuplicateKeyException(DuplicateKeyMessages.forEmail(email)))
+                        : Mono.empty());
+    }
+
+    private Mono<UserRequest> hashPassword(final UserRequest request) {
+        if (request.password() == null) {
+            return Mono.just(request);
+        }
+        return passwordHasher.hash(request.password())
+                .map(hash -> new UserRequest(request.name(), request.email(), hash));
+    }
+
+    /**
+     * Bumps the collection change counter before the write is answered, so a client that
+     * re-checks a listing with If-None-Match right after its own write never gets a 304 for
+     * the listing it just changed. A failed bump is logged and does not fail the write.
+     */
+    private <T> Mono<T> recordChange(final T value) {
+        return changeCounter.increment(ChangeCounterRepository.USERS)
+                .doOnError(error -> log.warn("Could not record change on the user collection", error))
+                .onErrorResume(error -> Mono.empty())
+                .thenReturn(value);
+    }
+
+    private UserPatch toPatch(final UserRequest request) {
+        return new UserPatch(request.name(), request.email(), request.password());
+    }
+
+    private Flux<UserBatchItemResponse> saveChunk(final List<Tuple2<Long, UserRequest>> chunk) {
+        final List<UserBatchItemResponse> rejected = new ArrayList<>();
+        final List<Tuple2<Long, UserRequest>> accepted = new ArrayList<>();
+
+        for (Tuple2<Long, UserRequest> item : chunk) {
+            Set<ConstraintViolation<UserRequest>> violations = validator.validate(item.getT2());
+            if (violations.isEmpty()) {
+                accepted.add(item);
+            } else {
+                rejected.add(UserBatchItemResponse.failed(
+                        item.getT1(), item.getT2().email(), "Error on validation attributes", fieldErrors(violations)
+                ));
+            }
+        }
+
+        return Flux.fromIterable(accepted)
+                .flatMapSequential(item -> HashedRow.of(item.getT1(), item.getT2(), hashPassword(item.getT2())),
+                        passwordHasher.parallelism())
+                .collectList()
+                .flatMap(rows -> {
+                    final List<HashedRow> hashed = new ArrayList<>();
+                    for (HashedRow row : rows) {
+                        if (row.rejected()) {
+                            rejected.add(row.rejection());
+                        } else {
+                            hashed.add(row);
+                        }
+                    }
+
+                    final List<User> entities = hashed.stream().map(row -> mapper.toEntity(row.hashed())).toList();
+                    return repository.insertAll(entities)
+                            .flatMap(result -> result.errors().size() < entities.size()
+                                    ? recordChange(result)
+                                    : Mono.just(result))
+                            .map(result -> {
+                                result.users().forEach(user -> registeredEmails.add(user.getEmail()));
+                                final List<UserBatchItemResponse> items = new ArrayList<>(rejected);
+                                for (int i = 0; i < hashed.size(); i++) {
+                                    items.add(batchItem(hashed.get(i), result, i));
+                                }
+                                items.sort(BY_INDEX);
+                                return items;
+                            });
+                })
+                .flatMapIterable(items -> items);
+    }
+
+    private UserBatchItemResponse batchItem(HashedRow row, BulkInsertResult result, int position) {
+        if (result.failed(position)) {
+            DataAccessException error = result.errors().get(position);
+            String message = error instanceof DuplicateKeyException
+                    ? DuplicateKeyMessages.resolve(error.getMessage())
+                    : error.getMessage();
+            return UserBatchItemResponse.failed(row.index(), row.request().email(), message, List.of());
+        }
+        return UserBatchItemResponse.created(row.index(), result.users().get(position).getId(), row.request().email());
+    }
+
+    private List<FieldErrorResponse> fieldErrors(Set<ConstraintViolation<UserRequest>> violations) {
+        return violations.stream()
+                .map(violation -> new FieldErrorResponse(violation.getPropertyPath().toString(), violation.getMessage()))
+                .toList();
+    }
 }
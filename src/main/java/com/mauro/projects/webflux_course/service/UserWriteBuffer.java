@@ -0,0 +1,96 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.UserRepository;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import com.mauro.projects.webflux_course.support.MicroBatcher;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Coalesces single-user inserts into unordered bulk inserts when users.write-behind is
+ * enabled. Each caller still gets its own user or its own duplicate-key error back, and
+ * the collection change counter is bumped once per flush instead of once per insert.
+ */
+@Slf4j
+@Component
+public class UserWriteBuffer implements DisposableBean {
+
+    private final UserRepository repository;
+    private final ChangeCounterRepository changeCounter;
+    private final UserProperties.WriteBehind config;
+    private final MicroBatcher<User, User> batcher;
+    private final DistributionSummary batchSize;
+
+    public UserWriteBuffer(
+            final UserRepository repository,
+            final ChangeCounterRepository changeCounter,
+            final UserProperties properties,
+            final MeterRegistry registry
+    ) {
+        this.repository = repository;
+        this.changeCounter = changeCounter;
+        this.config = properties.getWriteBehind();
+        this.batcher = config.isEnabled()
+                ? new MicroBatcher<>(config.getMaxBatchSize(), config.getMaxPending(), config.getWindow(), this::flush)
+                : null;
+        this.batchSize = DistributionSummary.builder("users.write-behind.batch.size")
+                .description("Inserts coalesced into one bulk write")
+                .register(registry);
+
+        if (batcher != null) {
+            Gauge.builder("users.write-behind.pending", batcher, MicroBatcher::pending)
+                    .description("Inserts waiting for the next bulk write")
+                    .register(registry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return batcher != null;
+    }
+
+    public Mono<User> insert(final User user) {
+        return batcher.submit(user)
+                .onErrorMap(RejectedExecutionException.class, ex -> new ServiceUnavailableException(
+                        "Signup buffer is full, try again later"
+                ));
+    }
+
+    private Mono<Void> flush(final List<MicroBatcher.Pending<User, User>> batch) {
+        batchSize.record(batch.size());
+
+        return repository.insertAll(batch.stream().map(MicroBatcher.Pending::item).toList())
+                .flatMap(result -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (result.failed(i)) {
+                            batch.get(i).error(result.errors().get(i));
+                        } else {
+                            batch.get(i).success(result.users().get(i));
+                        }
+                    }
+                    return result.errors().size() < batch.size()
+                            ? changeCounter.increment(ChangeCounterRepository.USERS)
+                                    .doOnError(error -> log.warn("Could not record change on the user collection", error))
+                                    .onErrorResume(error -> Mono.empty())
+                                    .then()
+                            : Mono.<Void>empty();
+                });
+    }
+
+    @Override
+    public void destroy() {
+        if (batcher != null && !batcher.close(config.getShutdownTimeout())) {
+            log.warn("Write-behind buffer did not finish flushing within {}", config.getShutdownTimeout());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
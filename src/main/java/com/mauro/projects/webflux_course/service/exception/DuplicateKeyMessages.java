@@ -0,0 +1,18 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public final class DuplicateKeyMessages {
+
+    private DuplicateKeyMessages() {
+    }
+
+    public static String forEmail(String email) {
+        return String.format("E11000 duplicate key error collection: user index: email dup key: { email: \"%s\" }", email);
+    }
+
+    public static String resolve(String message) {
+        if (message != null && message.contains("email dup key")) {
+            return "E-mail already registered";
+        }
+        return "Dup key exception";
+    }
+}
@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public class GatewayTimeoutException extends RuntimeException {
+    public GatewayTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
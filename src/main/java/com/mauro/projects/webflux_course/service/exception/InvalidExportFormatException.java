@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public class InvalidExportFormatException extends BadRequestException {
+    public InvalidExportFormatException(String message) {
+        super(message);
+    }
+}
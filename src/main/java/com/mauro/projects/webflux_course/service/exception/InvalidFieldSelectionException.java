@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public class InvalidFieldSelectionException extends BadRequestException {
+    public InvalidFieldSelectionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.mauro.projects.webflux_course.service.exception;
+
+public class InvalidPageTokenException extends BadRequestException {
+    public InvalidPageTokenException(String message) {
+        super(message);
+    }
+}
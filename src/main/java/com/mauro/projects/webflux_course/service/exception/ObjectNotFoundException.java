@@ -1,7 +1,41 @@
 package com.mauro.projects.webflux_course.service.exception;
 
+/**
+ * Raised for every lookup of a missing user, which anyone probing random ids can trigger at
+ * will, so it carries no stack trace and only builds its message when something reads it.
+ */
 public class ObjectNotFoundException extends RuntimeException {
+
+    private final String key;
+    private final String value;
+    private final Class<?> type;
+    private String message;
+
     public ObjectNotFoundException(String message) {
-        super(message);
+        this(null, null, null);
+        this.message = message;
+    }
+
+    private ObjectNotFoundException(String key, String value, Class<?> type) {
+        super(null, null, false, false);
+        this.key = key;
+        this.value = value;
+        this.type = type;
+    }
+
+    public static ObjectNotFoundException forId(String id, Class<?> type) {
+        return new ObjectNotFoundException("Id", id, type);
+    }
+
+    public static ObjectNotFoundException forEmail(String email, Class<?> type) {
+        return new ObjectNotFoundException("Email", email, type);
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = "Object not found. " + key + ": " + value + ", Type: " + type.getSimpleName();
+        }
+        return message;
     }
 }
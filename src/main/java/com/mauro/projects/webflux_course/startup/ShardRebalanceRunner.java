@@ -0,0 +1,49 @@
+package com.mauro.projects.webflux_course.startup;
+
+import com.mauro.projects.webflux_course.repository.ShardRebalancer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+/**
+ * Adds the shards marked joining once the application is ready, in the background, so the
+ * move happens while traffic is served. When it has finished, clearing the joining flag
+ * makes the shard a regular member on the next start. Run it with a single instance up;
+ * other instances would not see the new ring until they restart.
+ */
+@Slf4j
+@Component
+public class ShardRebalanceRunner implements DisposableBean {
+
+    private final ObjectProvider<ShardRebalancer> rebalancer;
+    private volatile Disposable running;
+
+    public ShardRebalanceRunner(final ObjectProvider<ShardRebalancer> rebalancer) {
+        this.rebalancer = rebalancer;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        final ShardRebalancer shards = rebalancer.getIfAvailable();
+        if (shards == null || shards.joining().isEmpty()) {
+            return;
+        }
+
+        log.info("Adding shards {}", shards.joining().keySet());
+        running = shards.joinAll().subscribe(
+                moved -> log.info("Shards {} added, {} users moved", shards.joining().keySet(), moved),
+                error -> log.error("Adding shards {} failed, restart to resume", shards.joining().keySet(), error)
+        );
+    }
+
+    @Override
+    public void destroy() {
+        if (running != null) {
+            running.dispose();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mauro.projects.webflux_course.startup;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ends a training run: with users.startup.exit-when-ready the JVM exits as soon as the
+ * application is ready, after warm-up, so -XX:ArchiveClassesAtExit dumps every class a
+ * real start loads. The check is made at runtime rather than with a condition because AOT
+ * processing freezes bean conditions at build time.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrainingRunExit {
+
+    private final UserProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void exitIfTraining(final ApplicationReadyEvent event) {
+        if (!properties.getStartup().isExitWhenReady()) {
+            return;
+        }
+        log.info("Training run finished, exiting");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,173 @@
+package com.mauro.projects.webflux_course.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mauro.projects.webflux_course.config.MongoShards;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.UserService;
+import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.mauro.projects.webflux_course.config.UserProperties.Repository.Backend.MONGO;
+
+/**
+ * Runs before the application reports itself ready: Spring Boot only moves readiness to
+ * ACCEPTING_TRAFFIC once every ApplicationRunner has returned. With the Mongo backend it
+ * opens the minimum pool on the main database and on every shard, and makes sure the User
+ * indexes exist wherever users live; then it pushes synthetic
+ * requests through validation, mapping, Jackson and the service read path so the JIT has
+ * compiled them before real traffic arrives. Warm-up is best effort: a failing step is
+ * logged and the application still becomes ready once the timeout has passed.
+ */
+@Slf4j
+@Component
+public class WarmUpRunner implements ApplicationRunner {
+
+    private static final UserRequest VALID = new UserRequest("Warm Up", "warm.up@mail.com", "warm-up");
+    private static final UserRequest INVALID = new UserRequest(" W", "warm.up.mail.com", " ");
+
+    private final UserProperties properties;
+    private final UserService service;
+    private final UserMapper mapper;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final PasswordHasher passwordHasher;
+    private final ObjectProvider<ReactiveMongoTemplate> mongoTemplate;
+    private final ObjectProvider<MongoShards> mongoShards;
+    private final AtomicLong durationNanos = new AtomicLong();
+
+    public WarmUpRunner(
+            final UserProperties properties,
+            final UserService service,
+            final UserMapper mapper,
+            final Validator validator,
+            final ObjectMapper objectMapper,
+            final PasswordHasher passwordHasher,
+            final ObjectProvider<ReactiveMongoTemplate> mongoTemplate,
+            final ObjectProvider<MongoShards> mongoShards,
+            final MeterRegistry registry
+    ) {
+        this.properties = properties;
+        this.service = service;
+        this.mapper = mapper;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.passwordHasher = passwordHasher;
+        this.mongoTemplate = mongoTemplate;
+        this.mongoShards = mongoShards;
+
+        TimeGauge.builder("users.warmup.duration", durationNanos, TimeUnit.NANOSECONDS, AtomicLong::get)
+                .description("Time spent warming up before reporting readiness, 0 until it has run")
+                .register(registry);
+    }
+
+    @Override
+    public void run(final ApplicationArguments args) {
+        final UserProperties.WarmUp config = properties.getWarmUp();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        step("Mongo pool and indexes", () -> mongo(config))
+                .then(step("validation, mapping and serialization", () -> Mono.fromRunnable(() -> local(config.getIterations()))))
+                .then(step("password hashing", () -> passwordHasher.hash(VALID.password()).then()))
+                .then(step("service reads", () -> reads(config.getRepositoryCalls())))
+                .timeout(config.getTimeout(), Mono.fromRunnable(() -> log.warn("Warm-up did not finish within {}", config.getTimeout())))
+                .block();
+
+        durationNanos.set(System.nanoTime() - start);
+        log.info("Warm-up finished in {} ms", Duration.ofNanos(durationNanos.get()).toMillis());
+    }
+
+    private Mono<Void> mongo(final UserProperties.WarmUp config) {
+        final ReactiveMongoTemplate template = mongoTemplate.getIfAvailable();
+        if (template == null || properties.getRepository().getBackend() != MONGO) {
+            return Mono.empty();
+        }
+
+        final MongoShards shards = mongoShards.getIfAvailable();
+        final List<ReactiveMongoTemplate> userTemplates = shards == null ? List.of(template) : List.copyOf(shards.templates().values());
+        final List<ReactiveMongoTemplate> templates = shards == null
+                ? userTemplates
+                : Stream.concat(Stream.of(template), userTemplates.stream()).toList();
+
+        final int connections = config.getMongoConnections();
+        final Mono<Void> pools = Flux.fromIterable(templates)
+                .flatMap(each -> Flux.range(0, connections)
+                        .flatMap(i -> each.executeCommand(new Document("ping", 1)), connections))
+                .then();
+        final Mono<Void> indexes = Flux.fromIterable(userTemplates)
+                .flatMap(this::indexes)
+                .then();
+
+        return pools.then(indexes);
+    }
+
+    private Mono<Void> indexes(final ReactiveMongoTemplate template) {
+        final var indexOps = template.indexOps(User.class);
+        return Flux.fromIterable(IndexResolver.create(template.getConverter().getMappingContext())
+                        .resolveIndexFor(User.class))
+                .concatMap(indexOps::ensureIndex)
+                .then();
+    }
+
+    private void local(final int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            validator.validate(VALID);
+            validator.validate(INVALID);
+
+            final User user = mapper.toEntity(VALID);
+            user.setId(ObjectId.get().toHexString());
+            final UserResponse response = mapper.toResponse(user);
+            mapper.toEntity(new UserRequest(VALID.name(), null, null), user);
+
+            try {
+                objectMapper.readValue(objectMapper.writeValueAsBytes(VALID), UserRequest.class);
+                objectMapper.writeValueAsBytes(response);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Mono<Void> reads(final int calls) {
+        return Flux.range(0, calls)
+                .concatMap(i -> service.findById(ObjectId.get().toHexString())
+                        .onErrorResume(ObjectNotFoundException.class, error -> Mono.empty())
+                        .then(service.existsByEmail(VALID.email())))
+                .then();
+    }
+
+    private Mono<Void> step(final String name, final Supplier<Mono<Void>> step) {
+        return Mono.defer(step)
+                .doOnError(error -> log.warn("Warm-up step '{}' failed", name, error))
+                .onErrorResume(error -> Mono.empty());
+    }
+}
@@ -0,0 +1,192 @@
+package com.mauro.projects.webflux_course.support;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps in-flight calls at a limit that follows observed latency, in the style of the
+ * gradient limiter: a slow moving average of latency is the baseline, and each sample moves
+ * the limit by the ratio baseline / sample (never above 1) plus a small sqrt(limit) probe
+ * for headroom. When latency rises the limit shrinks; when it stays near the baseline the
+ * limit grows. Timeouts and connection failures cut the limit multiplicatively. Calls over
+ * the limit fail immediately with LimitExceededException instead of queueing.
+ * For fluxes both the latency sample and the permit end at the first signal: the rest of
+ * a stream is paced by its consumer, and long downloads holding permits would shed point
+ * reads. A caller that enforces its own timeout outside the limiter
+ * passes it as the deadline: the limiter only sees that timeout as a cancellation, so a
+ * call cancelled before its first signal once the deadline has passed counts as a timeout.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double BASELINE_WINDOW = 600;
+    // The caller's timer starts just before the permit is taken, so allow for the gap.
+    private static final long DEADLINE_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final LongSupplier clock;
+
+    private volatile double limit;
+    private double baselineNanos;
+
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                                      final double tolerance, final double smoothing) {
+        this(initialLimit, minLimit, maxLimit, tolerance, smoothing, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                               final double tolerance, final double smoothing, final LongSupplier clock) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.clock = clock;
+    }
+
+    public <T> Mono<T> mono(final Mono<T> source) {
+        return mono(source, null);
+    }
+
+    public <T> Mono<T> mono(final Mono<T> source, final Duration deadline) {
+        return Mono.defer(() -> {
+            final Permit permit = acquire(deadline);
+            if (permit == null) {
+                return Mono.error(rejected());
+            }
+            return source
+                    .doOnSuccess(value -> permit.sample(null))
+                    .doOnError(permit::sample)
+                    .doOnCancel(permit::cancelled)
+                    .doFinally(signal -> permit.release());
+        });
+    }
+
+    public <T> Flux<T> flux(final Flux<T> source) {
+        return flux(source, null);
+    }
+
+    public <T> Flux<T> flux(final Flux<T> source, final Duration deadline) {
+        return Flux.defer(() -> {
+            final Permit permit = acquire(deadline);
+            if (permit == null) {
+                return Flux.error(rejected());
+            }
+            return source
+                    .doOnNext(value -> {
+                        permit.sample(null);
+                        permit.release();
+                    })
+                    .doOnComplete(() -> permit.sample(null))
+                    .doOnError(permit::sample)
+                    .doOnCancel(permit::cancelled)
+                    .doFinally(signal -> permit.release());
+        });
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private Permit acquire(final Duration deadline) {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= (int) limit) {
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(clock.getAsLong(), deadline == null ? Long.MAX_VALUE : deadline.toNanos() - DEADLINE_SLACK_NANOS);
+            }
+        }
+    }
+
+    private LimitExceededException rejected() {
+        return new LimitExceededException("Concurrency limit of " + limit() + " reached");
+    }
+
+    private synchronized void onSample(final long latencyNanos, final boolean overload) {
+        if (overload) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+
+        final double sample = Math.max(1, latencyNanos);
+        baselineNanos = baselineNanos == 0 ? sample : baselineNanos + (sample - baselineNanos) / BASELINE_WINDOW;
+        if (baselineNanos / sample > 2) {
+            // Latency dropped well below the baseline, so let the baseline catch up faster.
+            baselineNanos *= 0.95;
+        }
+
+        final double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / sample));
+        final double target = limit * gradient + Math.sqrt(limit);
+        final double next = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + target * smoothing));
+
+        // While demand is well under the limit, fast samples say nothing about spare capacity.
+        if (next < limit || inFlight.get() * 2 >= limit) {
+            limit = next;
+        }
+    }
+
+    private static boolean isOverload(final Throwable error) {
+        return error instanceof TimeoutException
+                || error instanceof QueryTimeoutException
+                || error instanceof DataAccessResourceFailureException;
+    }
+
+    public static class LimitExceededException extends RejectedExecutionException {
+
+        public LimitExceededException(final String message) {
+            super(message);
+        }
+    }
+
+    private final class Permit {
+
+        private final long start;
+        private final long deadlineNanos;
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(final long start, final long deadlineNanos) {
+            this.start = start;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private void sample(final Throwable error) {
+            if (sampled.compareAndSet(false, true)) {
+                onSample(clock.getAsLong() - start, error != null && isOverload(error));
+            }
+        }
+
+        private void cancelled() {
+            final long elapsed = clock.getAsLong() - start;
+            if (elapsed >= deadlineNanos && sampled.compareAndSet(false, true)) {
+                onSample(elapsed, true);
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.mauro.projects.webflux_course.support;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Count-based circuit breaker. Closed, it keeps the outcome of the last window-size calls
+ * and opens once at least minimum-calls were seen and the failure rate reaches the
+ * threshold. Open, every call fails immediately with CallNotPermittedException until the
+ * open duration has passed. Half-open, a few trial calls go through: all succeeding closes
+ * the breaker, any failing opens it again. Only errors matching the failure predicate count
+ * as failures, so business errors such as duplicate keys never trip it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Predicate<Throwable> isFailure;
+    private final LongSupplier clock;
+
+    private final boolean[] outcomes;
+    private int recorded;
+    private int failures;
+    private int next;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int trialPermits;
+    private int trialSuccesses;
+
+    public CircuitBreaker(final int windowSize, final int minimumCalls, final double failureRateThreshold,
+                          final Duration openDuration, final int halfOpenCalls, final Predicate<Throwable> isFailure) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, isFailure, System::nanoTime);
+    }
+
+    CircuitBreaker(final int windowSize, final int minimumCalls, final double failureRateThreshold,
+                   final Duration openDuration, final int halfOpenCalls, final Predicate<Throwable> isFailure,
+                   final LongSupplier clock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.isFailure = isFailure;
+        this.clock = clock;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    public <T> Mono<T> mono(final Mono<T> source) {
+        return Mono.defer(() -> {
+            final State acquired = acquire();
+            if (acquired == null) {
+                return Mono.error(notPermitted());
+            }
+            return source
+                    .doOnSuccess(value -> onSuccess())
+                    .doOnError(this::onError)
+                    .doOnCancel(() -> onCancel(acquired));
+        });
+    }
+
+    public <T> Flux<T> flux(final Flux<T> source) {
+        return Flux.defer(() -> {
+            final State acquired = acquire();
+            if (acquired == null) {
+                return Flux.error(notPermitted());
+            }
+            return source
+                    .doOnComplete(this::onSuccess)
+                    .doOnError(this::onError)
+                    .doOnCancel(() -> onCancel(acquired));
+        });
+    }
+
+    public State state() {
+        return state;
+    }
+
+    private synchronized State acquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openNanos) {
+                return null;
+            }
+            state = State.HALF_OPEN;
+            trialPermits = halfOpenCalls;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialPermits == 0) {
+                return null;
+            }
+            trialPermits--;
+        }
+        return state;
+    }
+
+    private synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialSuccesses >= halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    private void onError(final Throwable error) {
+        if (isFailure.test(error)) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                open();
+            }
+        }
+    }
+
+    private synchronized void onCancel(final State acquired) {
+        if (acquired == State.HALF_OPEN && state == State.HALF_OPEN) {
+            trialPermits++;
+        }
+    }
+
+    private void record(final boolean failed) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        failures = 0;
+        next = 0;
+    }
+
+    private synchronized CallNotPermittedException notPermitted() {
+        final long remaining = state == State.OPEN ? openNanos - (clock.getAsLong() - openedAt) : 0;
+        return new CallNotPermittedException(Duration.ofNanos(Math.max(0, remaining)));
+    }
+
+    public static class CallNotPermittedException extends RejectedExecutionException {
+
+        private final Duration retryAfter;
+
+        public CallNotPermittedException(final Duration retryAfter) {
+            super("Circuit breaker is open");
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration retryAfter() {
+            return retryAfter;
+        }
+    }
+}
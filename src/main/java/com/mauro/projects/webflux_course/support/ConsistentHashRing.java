@@ -0,0 +1,71 @@
+package com.mauro.projects.webflux_course.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring with virtual nodes. Each node owns virtual-nodes points on a 64-bit
+ * ring and a key belongs to the first point at or after its hash, so adding a node only
+ * takes keys over from the others, about 1/N of them, and never moves keys between the
+ * nodes that were already there. Rings are immutable; with returns a new one.
+ */
+public final class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private final Map<String, T> nodes;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    public ConsistentHashRing(final Map<String, T> nodes, final int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        this.virtualNodes = virtualNodes;
+        this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+        for (String name : nodes.keySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(name + "#" + i), name);
+            }
+        }
+    }
+
+    public ConsistentHashRing<T> with(final String name, final T node) {
+        final Map<String, T> grown = new LinkedHashMap<>(nodes);
+        grown.put(name, node);
+        return new ConsistentHashRing<>(grown, virtualNodes);
+    }
+
+    public String nameFor(final String key) {
+        final Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public T nodeFor(final String key) {
+        return nodes.get(nameFor(key));
+    }
+
+    public Map<String, T> nodes() {
+        return nodes;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes followed by the murmur3 finalizer, so keys sharing a long
+     * prefix, as ObjectIds created in the same second do, still spread over the whole ring.
+     */
+    static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,160 @@
+package com.mauro.projects.webflux_course.support;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+public class MicroBatcher<T, R> {
+
+    private final Queue<Pending<T, R>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger flushing = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final Duration window;
+    private final Function<List<Pending<T, R>>, Mono<Void>> flusher;
+    private final Scheduler scheduler;
+
+    public MicroBatcher(final int maxBatchSize, final Duration window,
+                        final Function<List<Pending<T, R>>, Mono<Void>> flusher) {
+        this(maxBatchSize, Integer.MAX_VALUE, window, flusher, Schedulers.parallel());
+    }
+
+    public MicroBatcher(final int maxBatchSize, final Duration window,
+                        final Function<List<Pending<T, R>>, Mono<Void>> flusher, final Scheduler scheduler) {
+        this(maxBatchSize, Integer.MAX_VALUE, window, flusher, scheduler);
+    }
+
+    public MicroBatcher(final int maxBatchSize, final int maxPending, final Duration window,
+                        final Function<List<Pending<T, R>>, Mono<Void>> flusher) {
+        this(maxBatchSize, maxPending, window, flusher, Schedulers.parallel());
+    }
+
+    public MicroBatcher(final int maxBatchSize, final int maxPending, final Duration window,
+                        final Function<List<Pending<T, R>>, Mono<Void>> flusher, final Scheduler scheduler) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+        this.window = window;
+        this.flusher = flusher;
+        this.scheduler = scheduler;
+    }
+
+    public Mono<R> submit(final T item) {
+        return Mono.create(sink -> {
+            if (closed) {
+                sink.error(new RejectedExecutionException("Batcher is closed"));
+                return;
+            }
+            final int reserved = size.incrementAndGet();
+            if (reserved > maxPending) {
+                size.decrementAndGet();
+                sink.error(new RejectedExecutionException("Batcher is full: " + maxPending + " items pending"));
+                return;
+            }
+
+            queue.offer(new Pending<>(item, sink));
+            if (reserved >= maxBatchSize) {
+                drain(maxBatchSize);
+            } else if (scheduled.compareAndSet(false, true)) {
+                scheduler.schedule(this::onWindow, window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public int pending() {
+        return size.get();
+    }
+
+    /**
+     * Rejects new items, flushes everything already queued and waits up to the timeout
+     * for the flushes to finish. Returns whether everything was flushed in time.
+     */
+    public boolean close(final Duration timeout) {
+        closed = true;
+        drain(1);
+
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (flushing.get() > 0 || size.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            drain(1);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    private void onWindow() {
+        scheduled.set(false);
+        drain(1);
+    }
+
+    private void drain(final int minBatchSize) {
+        while (size.get() >= minBatchSize) {
+            final List<Pending<T, R>> batch = new ArrayList<>(Math.min(size.get(), maxBatchSize));
+            Pending<T, R> pending;
+            while (batch.size() < maxBatchSize && (pending = queue.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(pending);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            flush(batch);
+        }
+    }
+
+    private void flush(final List<Pending<T, R>> batch) {
+        flushing.incrementAndGet();
+        Mono.defer(() -> flusher.apply(batch))
+                .doFinally(signal -> flushing.decrementAndGet())
+                .subscribe(
+                        null,
+                        error -> batch.forEach(pending -> pending.error(error)),
+                        () -> batch.forEach(Pending::complete)
+                );
+    }
+
+    public static final class Pending<T, R> {
+
+        private final T item;
+        private final MonoSink<R> sink;
+
+        private Pending(final T item, final MonoSink<R> sink) {
+            this.item = item;
+            this.sink = sink;
+        }
+
+        public T item() {
+            return item;
+        }
+
+        public void success(final R value) {
+            sink.success(value);
+        }
+
+        public void error(final Throwable error) {
+            sink.error(error);
+        }
+
+        void complete() {
+            sink.success();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mauro.projects.webflux_course.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Percentile over the last window-size samples. Recording is one atomic increment and one
+ * array store; the percentile is recomputed from a sorted copy every refresh-interval
+ * samples and served from a volatile in between, so readers never sort on the hot path.
+ */
+public class RollingPercentile {
+
+    private final double percentile;
+    private final int refreshInterval;
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private volatile long value = -1;
+
+    public RollingPercentile(final double percentile, final int windowSize, final int refreshInterval) {
+        this.percentile = percentile;
+        this.refreshInterval = refreshInterval;
+        this.samples = new AtomicLongArray(windowSize);
+    }
+
+    public void record(final long sample) {
+        final long n = count.getAndIncrement();
+        samples.set((int) (n % samples.length()), sample);
+        if ((n + 1) % refreshInterval == 0) {
+            refresh(Math.min(n + 1, samples.length()));
+        }
+    }
+
+    /**
+     * The percentile of the recent samples, or -1 until the first refresh-interval samples
+     * have been recorded.
+     */
+    public long value() {
+        return value;
+    }
+
+    private void refresh(final long size) {
+        final long[] copy = new long[(int) size];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        value = copy[(int) Math.min(copy.length - 1, Math.ceil(percentile * copy.length) - 1)];
+    }
+}
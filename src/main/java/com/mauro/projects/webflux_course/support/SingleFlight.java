@@ -0,0 +1,55 @@
+package com.mauro.projects.webflux_course.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter saved;
+
+    public SingleFlight(final String name, final MeterRegistry registry) {
+        this.saved = Counter.builder("singleflight.saved")
+                .description("Calls answered by joining a request already in flight")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    public Mono<V> execute(final K key, final Function<K, Mono<V>> loader) {
+        return Mono.defer(() -> {
+            final Mono<V> existing = inFlight.get(key);
+            if (existing != null) {
+                saved.increment();
+                return existing;
+            }
+
+            final Mono<V> flight = newFlight(key, loader);
+            final Mono<V> raced = inFlight.putIfAbsent(key, flight);
+            if (raced != null) {
+                saved.increment();
+                return raced;
+            }
+            return flight;
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private Mono<V> newFlight(final K key, final Function<K, Mono<V>> loader) {
+        final AtomicReference<Mono<V>> self = new AtomicReference<>();
+        final Mono<V> flight = Mono.defer(() -> loader.apply(key))
+                .doOnTerminate(() -> inFlight.remove(key, self.get()))
+                .doOnCancel(() -> inFlight.remove(key, self.get()))
+                .share();
+        self.set(flight);
+        return flight;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mauro.projects.webflux_course.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Jackson2CborEncoder refuses to encode a Flux. This one writes a Flux as a CBOR
+ * indefinite-length array: the start marker, each element encoded on its own, then the
+ * break marker, so collections stream element by element like the JSON array encoder does.
+ */
+public class StreamingCborEncoder extends Jackson2CborEncoder {
+
+    private static final byte INDEFINITE_ARRAY = (byte) 0x9F;
+    private static final byte BREAK = (byte) 0xFF;
+
+    public StreamingCborEncoder(final ObjectMapper mapper) {
+        super(mapper, MediaType.APPLICATION_CBOR);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(final Publisher<?> inputStream, final DataBufferFactory bufferFactory,
+                                   final ResolvableType elementType, final MimeType mimeType,
+                                   final Map<String, Object> hints) {
+        if (inputStream instanceof Mono<?> mono) {
+            return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+
+        return Flux.concat(
+                Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{INDEFINITE_ARRAY})),
+                Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)),
+                Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{BREAK}))
+        );
+    }
+}
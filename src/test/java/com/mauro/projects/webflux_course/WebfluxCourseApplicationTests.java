@@ -3,7 +3,7 @@ package com.mauro.projects.webflux_course;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "users.warm-up.enabled=false")
 class WebfluxCourseApplicationTests {
 
 	@Test
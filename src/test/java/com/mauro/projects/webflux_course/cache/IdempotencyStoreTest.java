@@ -0,0 +1,80 @@
+package com.mauro.projects.webflux_course.cache;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.service.exception.BadRequestException;
+import com.mauro.projects.webflux_course.service.exception.IdempotencyKeyReusedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IdempotencyStoreTest {
+
+    private static final UserRequest REQUEST = new UserRequest("Mauro", "mauro@mail.com", "secret");
+
+    private final AtomicInteger writes = new AtomicInteger();
+    private final Supplier<Mono<?>> write = () -> Mono.fromCallable(writes::incrementAndGet);
+    private final IdempotencyStore store = new IdempotencyStore(new UserProperties(), new SimpleMeterRegistry());
+
+    @Test
+    void testRetryWithSameKeyIsReplayed() {
+        StepVerifier.create(store.execute("key-1", REQUEST, write)).expectNext(false).verifyComplete();
+        StepVerifier.create(store.execute("key-1", REQUEST, write)).expectNext(true).verifyComplete();
+        StepVerifier.create(store.execute("key-2", REQUEST, write)).expectNext(false).verifyComplete();
+
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    void testConcurrentDuplicateWaitsForTheRequestInFlight() {
+        final Sinks.One<Integer> firstWrite = Sinks.one();
+        final Supplier<Mono<?>> slowWrite = () -> firstWrite.asMono().doOnSubscribe(subscription -> writes.incrementAndGet());
+
+        final var first = store.execute("key", REQUEST, slowWrite).toFuture();
+        final var retry = store.execute("key", REQUEST, slowWrite).toFuture();
+        assertEquals(false, retry.isDone());
+
+        firstWrite.tryEmitValue(1);
+
+        assertEquals(false, first.join());
+        assertEquals(true, retry.join());
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    void testFailureIsNotRemembered() {
+        final Supplier<Mono<?>> failing = () -> Mono.error(new IllegalStateException("down"));
+
+        StepVerifier.create(store.execute("key", REQUEST, failing)).verifyError(IllegalStateException.class);
+        StepVerifier.create(store.execute("key", REQUEST, write)).expectNext(false).verifyComplete();
+
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    void testKeyReusedForDifferentRequestIsRefused() {
+        StepVerifier.create(store.execute("key", REQUEST, write)).expectNext(false).verifyComplete();
+        StepVerifier.create(store.execute("key", new UserRequest("Other", "other@mail.com", "secret"), write))
+                .verifyError(IdempotencyKeyReusedException.class);
+        StepVerifier.create(store.execute("key", new UserRequest("Mauro", "mauro@mail.com", "other"), write))
+                .verifyError(IdempotencyKeyReusedException.class);
+        StepVerifier.create(store.execute(" ", REQUEST, write)).verifyError(BadRequestException.class);
+
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    void testWithoutKeyEveryRequestRuns() {
+        StepVerifier.create(store.execute(null, REQUEST, write)).expectNext(false).verifyComplete();
+        StepVerifier.create(store.execute(null, REQUEST, write)).expectNext(false).verifyComplete();
+
+        assertEquals(2, writes.get());
+    }
+}
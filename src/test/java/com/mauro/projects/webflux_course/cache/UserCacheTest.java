@@ -0,0 +1,70 @@
+package com.mauro.projects.webflux_course.cache;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, Mono<User>> loader =
+            id -> Mono.fromCallable(() -> User.builder().id(id).name("load-" + loads.incrementAndGet()).build());
+
+    private SimpleMeterRegistry registry;
+    private UserCache cache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new UserCache(new UserProperties(), registry);
+    }
+
+    @Test
+    void testGetLoadsOnceAndThenHits() {
+        StepVerifier.create(cache.get("1", loader)).expectNextMatches(user -> user.getName().equals("load-1")).verifyComplete();
+        StepVerifier.create(cache.get("1", loader)).expectNextMatches(user -> user.getName().equals("load-1")).verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testEmptyResultIsNotCached() {
+        StepVerifier.create(cache.get("1", id -> Mono.empty())).verifyComplete();
+        StepVerifier.create(cache.get("1", loader)).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testPutAndInvalidate() {
+        cache.put(User.builder().id("1").name("saved").build());
+        StepVerifier.create(cache.get("1", loader)).expectNextMatches(user -> user.getName().equals("saved")).verifyComplete();
+
+        cache.invalidate("1");
+        StepVerifier.create(cache.get("1", loader)).expectNextMatches(user -> user.getName().equals("load-1")).verifyComplete();
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        UserProperties properties = new UserProperties();
+        properties.getCache().setEnabled(false);
+        UserCache disabled = new UserCache(properties, registry);
+
+        disabled.put(User.builder().id("1").build());
+        StepVerifier.create(disabled.get("1", loader)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(disabled.get("1", loader)).expectNextCount(1).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+}
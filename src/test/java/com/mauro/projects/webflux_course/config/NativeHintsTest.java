@@ -0,0 +1,30 @@
+package com.mauro.projects.webflux_course.config;
+
+import com.mauro.projects.webflux_course.controller.exceptions.StandardError;
+import com.mauro.projects.webflux_course.controller.exceptions.ValidationError;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.validator.TrimStringValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void testRegistersBindingAndValidatorReflection() throws NoSuchMethodException {
+        new NativeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(UserRequest.class.getMethod("email")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(UserResponse.class.getMethod("id")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(StandardError.class.getMethod("getMessage")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ValidationError.class.getMethod("getErrors")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(UserProperties.Breaker.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onConstructor(TrimStringValidator.class.getConstructor()).invoke().test(hints));
+    }
+}
@@ -1,11 +1,23 @@
 package com.mauro.projects.webflux_course.controller;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.mauro.projects.webflux_course.entity.User;
 import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserFields;
 import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.model.response.UserImportProgress;
 import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.service.NotFound;
+import com.mauro.projects.webflux_course.service.PageToken;
+import com.mauro.projects.webflux_course.service.UserImportService;
 import com.mauro.projects.webflux_course.service.UserService;
+import com.mauro.projects.webflux_course.service.exception.GatewayTimeoutException;
+import com.mauro.projects.webflux_course.service.exception.InvalidPageTokenException;
 import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import com.mauro.projects.webflux_course.service.exception.PreconditionFailedException;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
 import com.mongodb.reactivestreams.client.MongoClient;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,20 +29,43 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
-
-
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mauro.projects.webflux_course.controller.Headers.IDEMPOTENCY_KEY;
+import static com.mauro.projects.webflux_course.controller.Headers.IDEMPOTENT_REPLAYED;
+import static com.mauro.projects.webflux_course.controller.MediaTypes.APPLICATION_SMILE;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.web.reactive.function.BodyInserters.fromValue;
 import static reactor.core.publisher.Mono.empty;
 import static reactor.core.publisher.Mono.just;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@SpringBootTest(properties = "users.warm-up.enabled=false")
 @AutoConfigureWebTestClient
 class UserControllerImplTest {
 
@@ -50,6 +85,9 @@ class UserControllerImplTest {
     @MockBean
     private UserService service;
 
+    @MockBean
+    private UserImportService importService;
+
     @MockBean
     private UserMapper mapper;
 
@@ -74,6 +112,76 @@ class UserControllerImplTest {
 
     }
 
+    @Test
+    @DisplayName("Test endpoint save replays a retry with the same idempotency key")
+    void testSaveWithIdempotencyKey() {
+        final var request = new UserRequest(NAME, EMAIL, PASSWORD);
+
+        when(service.save(any(UserRequest.class))).thenReturn(just(User.builder().build()));
+
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .header(IDEMPOTENCY_KEY, "save-retry")
+                .body(fromValue(request))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().doesNotExist(IDEMPOTENT_REPLAYED);
+
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .header(IDEMPOTENCY_KEY, "save-retry")
+                .body(fromValue(request))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals(IDEMPOTENT_REPLAYED, "true");
+
+        verify(service, times(1)).save(any(UserRequest.class));
+    }
+
+    @Test
+    @DisplayName("Test endpoint save refuses an idempotency key reused for another request")
+    void testSaveWithReusedIdempotencyKey() {
+        when(service.save(any(UserRequest.class))).thenReturn(just(User.builder().build()));
+
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .header(IDEMPOTENCY_KEY, "save-reused")
+                .body(fromValue(new UserRequest(NAME, EMAIL, PASSWORD)))
+                .exchange()
+                .expectStatus().isCreated();
+
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .header(IDEMPOTENCY_KEY, "save-reused")
+                .body(fromValue(new UserRequest(NAME, "other@mail.com", PASSWORD)))
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(UNPROCESSABLE_ENTITY.value())
+                .jsonPath("$.message").isEqualTo("Idempotency-Key was already used for a different request");
+
+        verify(service, times(1)).save(any(UserRequest.class));
+    }
+
+    @Test
+    @DisplayName("Test endpoint save with saturated password hashing")
+    void TestSaveWithServiceUnavailable() {
+        final var request = new UserRequest(NAME, EMAIL, PASSWORD);
+
+        when(service.save(any(UserRequest.class)))
+                .thenReturn(Mono.error(new ServiceUnavailableException("Password hashing is saturated, try again later")));
+
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .body(fromValue(request))
+                .exchange()
+                .expectStatus().isEqualTo(SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(RETRY_AFTER, "1")
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(SERVICE_UNAVAILABLE.value())
+                .jsonPath("$.message").isEqualTo("Password hashing is saturated, try again later");
+    }
+
     @Test
     @DisplayName("Test endpoint save with bad request")
     void TestSaveWithBadRequestNameInvalid() {
@@ -139,10 +247,56 @@ class UserControllerImplTest {
                 .jsonPath("$.errors[1].message").isEqualTo("must be between 3 and 50 characters");
     }
 
+    @Test
+    @DisplayName("Test endpoint save batch with json array")
+    void testSaveAllWithJsonArray() {
+        final var requests = List.of(new UserRequest(NAME, EMAIL, PASSWORD), new UserRequest(NAME, EMAIL, PASSWORD));
+
+        when(service.saveAll(any())).thenReturn(Flux.just(
+                UserBatchItemResponse.created(0, ID, EMAIL),
+                UserBatchItemResponse.failed(1, EMAIL, "E-mail already registered", List.of())
+        ));
+
+        webTestClient.post().uri("/users/batch")
+                .contentType(APPLICATION_JSON)
+                .accept(APPLICATION_JSON)
+                .body(fromValue(requests))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].index").isEqualTo(0)
+                .jsonPath("$[0].success").isEqualTo(true)
+                .jsonPath("$[0].id").isEqualTo(ID)
+                .jsonPath("$[1].success").isEqualTo(false)
+                .jsonPath("$[1].message").isEqualTo("E-mail already registered");
+
+        verify(service).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Test endpoint save batch with ndjson stream")
+    void testSaveAllWithNdjson() {
+        final var body = format("{\"name\":\"%s\",\"email\":\"%s\",\"password\":\"%s\"}\n", NAME, EMAIL, PASSWORD);
+
+        when(service.saveAll(any())).thenAnswer(invocation -> {
+            Flux<UserRequest> requests = invocation.getArgument(0);
+            return requests.map(request -> UserBatchItemResponse.created(0, ID, request.email()));
+        });
+
+        webTestClient.post().uri("/users/batch")
+                .contentType(APPLICATION_NDJSON)
+                .accept(APPLICATION_NDJSON)
+                .body(fromValue(body.getBytes(UTF_8)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo(format("{\"index\":0,\"success\":true,\"id\":\"%s\",\"email\":\"%s\"}\n", ID, EMAIL));
+    }
+
     @Test
     @DisplayName("Test find by id endpoint with success")
     void TestFindByIdWithSuccess() {
-        final var userResponse = new UserResponse(ID, NAME, EMAIL, PASSWORD);
+        final var userResponse = new UserResponse(ID, NAME, EMAIL);
 
         when(service.findById(anyString())).thenReturn(just(User.builder().build()));
         when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
@@ -155,20 +309,102 @@ class UserControllerImplTest {
                 .jsonPath("$.id").isEqualTo(ID)
                 .jsonPath("$.name").isEqualTo(NAME)
                 .jsonPath("$.email").isEqualTo(EMAIL)
-                .jsonPath("$.password").isEqualTo(PASSWORD);
+                .jsonPath("$.password").doesNotExist();
 
         verify(service, times(1)).findById(anyString());
         verify(mapper, times(1)).toResponse(any(User.class));
 
     }
 
+    @Test
+    @DisplayName("Test find by id endpoint with sparse fieldset")
+    void TestFindByIdWithFields() {
+        when(service.findById(anyString())).thenReturn(just(User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.get().uri("/users/" + ID + "?fields=id,email")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(ID)
+                .jsonPath("$.email").isEqualTo(EMAIL)
+                .jsonPath("$.name").doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint with unknown field")
+    void TestFindByIdWithUnknownField() {
+        webTestClient.get().uri("/users/" + ID + "?fields=id,password")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Unknown field: password");
+
+        verify(service, never()).findById(anyString());
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint returns etag and not modified")
+    void TestFindByIdWithETag() {
+        when(service.findById(anyString())).thenReturn(just(User.builder().version(4L).build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.get().uri("/users/" + ID)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(ETAG, "\"4\"");
+
+        webTestClient.get().uri("/users/" + ID)
+                .accept(APPLICATION_JSON)
+                .header(IF_NONE_MATCH, "\"4\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Test find by email endpoint")
+    void TestFindByEmail() {
+        when(service.findByEmail(EMAIL)).thenReturn(just(User.builder().version(1L).build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.get().uri("/users/by-email/" + EMAIL)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(ID)
+                .jsonPath("$.email").isEqualTo(EMAIL);
+    }
+
+    @Test
+    @DisplayName("Test email existence check endpoint")
+    void TestExistsByEmail() {
+        when(service.existsByEmail(EMAIL)).thenReturn(just(true));
+        when(service.existsByEmail("unknown@mail.com")).thenReturn(just(false));
+
+        webTestClient.head().uri("/users/by-email/" + EMAIL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().isEmpty();
+
+        webTestClient.head().uri("/users/by-email/unknown@mail.com")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        verify(service, never()).findByEmail(anyString());
+    }
+
     @Test
     @DisplayName("Test find by id endpoint with object not found")
     void TestFindByIdWithObjectNotFound() {
         final var id = "12345";
 
-        // Simula que o serviço retornará Mono.empty() quando o objeto não for encontrado
-        when(service.findById(id)).thenReturn(empty());
+        // Simula o erro que o serviço retorna quando o objeto não é encontrado
+        when(service.findById(id)).thenReturn(NotFound.byId(empty(), id));
 
         webTestClient.get().uri("/users/" + id)
                 .accept(APPLICATION_JSON)
@@ -187,9 +423,10 @@ class UserControllerImplTest {
     @Test
     @DisplayName("Test find by id endpoint with success")
     void testFindAllWithSuccess() {
-        final var userResponse = new UserResponse(ID, NAME, EMAIL, PASSWORD);
+        final var userResponse = new UserResponse(ID, NAME, EMAIL);
 
-        when(service.findAll()).thenReturn(Flux.just(User.builder().build()));
+        when(service.collectionVersion()).thenReturn(just(7L));
+        when(service.findAll(any(UserFields.class))).thenReturn(Flux.just(User.builder().build()));
         when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
 
         webTestClient.get().uri("/users/all")
@@ -200,18 +437,18 @@ class UserControllerImplTest {
                 .jsonPath("$.[0].id").isEqualTo(ID)
                 .jsonPath("$.[0].name").isEqualTo(NAME)
                 .jsonPath("$.[0].email").isEqualTo(EMAIL)
-                .jsonPath("$.[0].password").isEqualTo(PASSWORD);
+                .jsonPath("$.[0].password").doesNotExist();
 
-        verify(service).findAll();
+        verify(service).findAll(UserFields.DEFAULT);
         verify(mapper).toResponse(any(User.class));
     }
 
     @Test
     @DisplayName("Test find by id endpoint with success")
     void testFindAllWithNotFound() {
-        final var userResponse = new UserResponse(ID, NAME, EMAIL, PASSWORD);
+        final var userResponse = new UserResponse(ID, NAME, EMAIL);
 
-        when(service.findAll()).thenReturn(Flux.just(User.builder().build()));
+        when(service.findAll(any(UserFields.class))).thenReturn(Flux.just(User.builder().build()));
         when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
 
         webTestClient.get().uri("/users/")
@@ -225,13 +462,68 @@ class UserControllerImplTest {
                 .jsonPath("$.message").isEmpty();
     }
 
+    @Test
+    @DisplayName("Test find all endpoint streaming as ndjson")
+    void testFindAllAsNdjson() {
+        final var userResponse = new UserResponse(ID, NAME, EMAIL);
+
+        when(service.collectionVersion()).thenReturn(just(7L));
+        when(service.findAll(any(UserFields.class))).thenReturn(Flux.just(User.builder().build(), User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
+
+        webTestClient.get().uri("/users/all")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+                .expectBodyList(UserResponse.class)
+                .hasSize(2)
+                .contains(userResponse);
+    }
+
+    @Test
+    @DisplayName("Test find page endpoint with success")
+    void testFindPageWithSuccess() {
+        final var userResponse = new UserResponse(ID, NAME, EMAIL);
+
+        when(service.collectionVersion()).thenReturn(just(7L));
+        when(service.findPage(isNull(), eq(1), eq(UserFields.DEFAULT))).thenReturn(Flux.just(User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
+
+        webTestClient.get().uri("/users/page?limit=1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(ID)
+                .jsonPath("$.next").isEqualTo(PageToken.encode(ID));
+
+        verify(service).findPage(isNull(), eq(1), eq(UserFields.DEFAULT));
+    }
+
+    @Test
+    @DisplayName("Test find page endpoint with invalid token")
+    void testFindPageWithInvalidToken() {
+        when(service.collectionVersion()).thenReturn(just(7L));
+        when(service.findPage(anyString(), anyInt(), any(UserFields.class)))
+                .thenReturn(Flux.error(new InvalidPageTokenException("Invalid page token: x")));
+
+        webTestClient.get().uri("/users/page?after=x")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(BAD_REQUEST.value())
+                .jsonPath("$.message").isEqualTo("Invalid page token: x");
+    }
+
     @Test
     @DisplayName("Test update endpoint with success")
     void testUpdateWithSuccess() {
         final var request = new UserRequest(NAME, EMAIL, PASSWORD);
-        final var userResponse = new UserResponse(ID, NAME, EMAIL, PASSWORD);
+        final var userResponse = new UserResponse(ID, NAME, EMAIL);
 
-        when(service.update(anyString(), any(UserRequest.class)))
+        when(service.update(anyString(), any(UserRequest.class), isNull()))
                 .thenReturn(just(User.builder().build()));
         when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
 
@@ -244,20 +536,251 @@ class UserControllerImplTest {
                 .jsonPath("$.id").isEqualTo(ID)
                 .jsonPath("$.name").isEqualTo(NAME)
                 .jsonPath("$.email").isEqualTo(EMAIL)
-                .jsonPath("$.password").isEqualTo(PASSWORD);
+                .jsonPath("$.password").doesNotExist();
 
-        verify(service).update(anyString(), any(UserRequest.class));
+        verify(service).update(anyString(), any(UserRequest.class), isNull());
         verify(mapper).toResponse(any(User.class));
 
     }
 
+    @Test
+    @DisplayName("Test update endpoint with if-match")
+    void testUpdateWithIfMatch() {
+        final var request = new UserRequest(NAME, null, null);
+
+        when(service.update(eq(ID), any(UserRequest.class), eq(4L)))
+                .thenReturn(just(User.builder().version(5L).build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.patch().uri("/users/" + ID)
+                .contentType(APPLICATION_JSON)
+                .header(IF_MATCH, "\"4\"")
+                .body(fromValue(request))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(ETAG, "\"5\"");
+    }
+
+    @Test
+    @DisplayName("Test update endpoint with stale if-match")
+    void testUpdateWithPreconditionFailed() {
+        final var request = new UserRequest(NAME, null, null);
+
+        when(service.update(eq(ID), any(UserRequest.class), eq(4L)))
+                .thenReturn(Mono.error(new PreconditionFailedException("Version mismatch")));
+
+        webTestClient.patch().uri("/users/" + ID)
+                .contentType(APPLICATION_JSON)
+                .header(IF_MATCH, "\"4\"")
+                .body(fromValue(request))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(PRECONDITION_FAILED.value())
+                .jsonPath("$.message").isEqualTo("Version mismatch");
+    }
+
+    @Test
+    @DisplayName("Test find all endpoint answers not modified for the current collection etag")
+    void testFindAllWithNotModified() {
+        when(service.collectionVersion()).thenReturn(just(7L));
+        final var queries = new AtomicInteger();
+        when(service.findAll(any(UserFields.class)))
+                .thenAnswer(invocation -> Flux.<User>empty().doOnSubscribe(subscription -> queries.incrementAndGet()));
+
+        final var etag = webTestClient.get().uri("/users/all")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(UserResponse.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/users/all")
+                .accept(APPLICATION_JSON)
+                .header(IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint with gateway timeout")
+    void testFindByIdWithGatewayTimeout() {
+        when(service.findById(anyString()))
+                .thenReturn(Mono.error(new GatewayTimeoutException("User repository findById did not answer within PT2S")));
+
+        webTestClient.get().uri("/users/" + ID)
+                .exchange()
+                .expectStatus().isEqualTo(GATEWAY_TIMEOUT)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(GATEWAY_TIMEOUT.value())
+                .jsonPath("$.message").isEqualTo("User repository findById did not answer within PT2S");
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint with open circuit breaker")
+    void testFindByIdWithOpenCircuit() {
+        when(service.findById(anyString())).thenReturn(Mono.error(
+                new ServiceUnavailableException("User repository is unavailable, try again later", Duration.ofSeconds(7))
+        ));
+
+        webTestClient.get().uri("/users/" + ID)
+                .exchange()
+                .expectStatus().isEqualTo(SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(RETRY_AFTER, "7");
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint answers cbor when asked for it")
+    void testFindByIdAsCbor() {
+        when(service.findById(anyString())).thenReturn(just(User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.get().uri("/users/" + ID)
+                .accept(APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_CBOR)
+                .expectBody(UserResponse.class)
+                .isEqualTo(new UserResponse(ID, NAME, EMAIL));
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint answers not found in cbor when asked for it")
+    void testFindByIdNotFoundAsCbor() throws IOException {
+        when(service.findById(anyString())).thenReturn(NotFound.byId(empty(), ID));
+
+        final var body = webTestClient.get().uri("/users/" + ID)
+                .accept(APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().contentType(APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        assertEquals(format("Object not found. Id: %s, Type: %s", ID, User.class.getSimpleName()),
+                new CBORMapper().readTree(body).get("message").asText());
+    }
+
+    @Test
+    @DisplayName("Test find all endpoint streams a cbor array")
+    void testFindAllAsCbor() throws IOException {
+        when(service.collectionVersion()).thenReturn(just(7L));
+        when(service.findAll(any(UserFields.class))).thenReturn(Flux.just(User.builder().build(), User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        final var body = webTestClient.get().uri("/users/all")
+                .accept(APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        assertEquals(2, new CBORMapper().readValue(body, UserResponse[].class).length);
+    }
+
+    @Test
+    @DisplayName("Test save endpoint reads smile and answers errors in smile")
+    void testSaveAndErrorsAsSmile() throws IOException {
+        final var smile = new SmileMapper();
+        when(service.save(any(UserRequest.class))).thenReturn(Mono.error(new ServiceUnavailableException("busy")));
+
+        final var body = webTestClient.post().uri("/users")
+                .contentType(APPLICATION_SMILE)
+                .accept(APPLICATION_SMILE)
+                .bodyValue(smile.writeValueAsBytes(new UserRequest(NAME, EMAIL, PASSWORD)))
+                .exchange()
+                .expectStatus().isEqualTo(SERVICE_UNAVAILABLE)
+                .expectHeader().contentType(APPLICATION_SMILE)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        assertEquals("busy", smile.readTree(body).get("message").asText());
+        verify(service).save(new UserRequest(NAME, EMAIL, PASSWORD));
+    }
+
+    @Test
+    @DisplayName("Test import endpoint splits the body into lines and streams progress")
+    void testImportStreamsProgress() {
+        final var lines = new ArrayList<String>();
+        when(importService.importUsers(any())).thenAnswer(invocation -> invocation.<Flux<String>>getArgument(0)
+                .doOnNext(lines::add)
+                .thenMany(Flux.just(new UserImportProgress(2, 1, 1, List.of(
+                        UserBatchItemResponse.failed(2, null, "Malformed JSON line", List.of())
+                )))));
+
+        webTestClient.post().uri("/users/import")
+                .contentType(APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Mauro\"}\n{\"name\":\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+                .expectBody()
+                .jsonPath("$.lines").isEqualTo(2)
+                .jsonPath("$.rejected").isEqualTo(1)
+                .jsonPath("$.rejections[0].message").isEqualTo("Malformed JSON line");
+
+        assertEquals(List.of("{\"name\":\"Mauro\"}", "{\"name\":"), lines);
+    }
+
+    @Test
+    @DisplayName("Test export endpoint streams csv with quoted fields")
+    void testExportAsCsv() {
+        when(service.export(isNull())).thenReturn(Flux.just(
+                User.builder().id("1").name("Vidal, Mauro").email(EMAIL).build(),
+                User.builder().id("2").name("Mauro \"MV\"").email("mv@mail.com").build()
+        ));
+
+        final var body = webTestClient.get().uri("/users/export?format=csv")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("text/csv;charset=UTF-8")
+                .expectHeader().valueEquals(CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"")
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+
+        assertEquals("id,name,email\n"
+                + "1,\"Vidal, Mauro\"," + EMAIL + "\n"
+                + "2,\"Mauro \"\"MV\"\"\",mv@mail.com\n", body);
+    }
+
+    @Test
+    @DisplayName("Test export endpoint streams ndjson created since the given instant")
+    void testExportAsNdjsonSince() {
+        final var since = Instant.parse("2024-01-01T00:00:00Z");
+        when(service.export(since)).thenReturn(Flux.just(User.builder().id(ID).name(NAME).email(EMAIL).build()));
+
+        final var body = webTestClient.get().uri("/users/export?since=" + since)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+
+        assertEquals(format("{\"id\":\"%s\",\"name\":\"%s\",\"email\":\"%s\"}\n", ID, NAME, EMAIL), body);
+        verify(service).export(since);
+    }
+
+    @Test
+    @DisplayName("Test export endpoint with unknown format")
+    void testExportWithUnknownFormat() {
+        webTestClient.get().uri("/users/export?format=xml")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Unknown export format: xml");
+
+        verify(service, never()).export(any());
+    }
+
     @Test
     @DisplayName("Test update endpoint with not found")
     void testUpdateWithNotFound() {
         final var expectedMessage = format("Object not found. Id: %s, Type: %s", ID, User.class.getSimpleName());
         final var request = new UserRequest(NAME, EMAIL, PASSWORD);
 
-        when(service.update(anyString(), any(UserRequest.class)))
+        when(service.update(anyString(), any(UserRequest.class), isNull()))
                 .thenThrow(new ObjectNotFoundException(expectedMessage));
 
         webTestClient.patch().uri("users/" + ID)
@@ -275,13 +798,13 @@ class UserControllerImplTest {
     @DisplayName("Test delete endpoint with success")
     void testDeleteWithSuccess() {
 
-        when(service.delete(anyString())).thenReturn(just(User.builder().build()));
+        when(service.delete(anyString(), isNull())).thenReturn(just(User.builder().build()));
 
         webTestClient.delete().uri("/users/" + ID)
                 .exchange()
                 .expectStatus().isOk();
 
-        verify(service).delete(anyString());
+        verify(service).delete(anyString(), isNull());
 
     }
 
@@ -292,7 +815,7 @@ class UserControllerImplTest {
         final var expectedMessage = format("Object not found. Id: %s, Type: %s", ID, User.class.getSimpleName());
 
 
-        when(service.delete(anyString())).thenThrow(new ObjectNotFoundException(expectedMessage));
+        when(service.delete(anyString(), isNull())).thenThrow(new ObjectNotFoundException(expectedMessage));
 
         webTestClient.delete().uri("/users/" + ID)
                 .exchange()
@@ -0,0 +1,68 @@
+package com.mauro.projects.webflux_course.controller.exceptions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+class ErrorBodiesTest {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void testWritesWhatJacksonWritesForStandardError() throws IOException {
+        final String path = "/users/\"quoted\"é";
+        final String message = "Object not found. Id: \"quoted\"é, Type: User";
+
+        final ObjectNode fast = (ObjectNode) mapper.readTree(ErrorBodies.json(NOT_FOUND, path, message));
+        final ObjectNode jackson = (ObjectNode) mapper.readTree(mapper.writeValueAsBytes(StandardError.builder()
+                .timestamp(LocalDateTime.now())
+                .path(path)
+                .status(NOT_FOUND.value())
+                .error(NOT_FOUND.getReasonPhrase())
+                .message(message)
+                .build()));
+
+        assertEquals(fieldNames(jackson), fieldNames(fast));
+        assertTrue(fast.get("timestamp").asText().matches("\\d{2}/\\d{2}/\\d{4} \\d{2}:\\d{2}:\\d{1,2}"));
+        assertEquals(jackson.without("timestamp"), fast.without("timestamp"));
+    }
+
+    @Test
+    void testWritesNullMessageAsJsonNull() throws IOException {
+        assertTrue(mapper.readTree(ErrorBodies.json(NOT_FOUND, "/users/", null)).get("message").isNull());
+    }
+
+    @Test
+    void testFastBodyOnlyWhenJsonIsThePreferredChoice() {
+        assertTrue(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1").build()));
+        assertTrue(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1").header("Accept", "*/*").build()));
+        assertTrue(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1").header("Accept", "application/json").build()));
+        assertFalse(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1")
+                .header("Accept", "application/cbor, application/json").build()));
+        assertTrue(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1")
+                .header("Accept", "application/cbor;q=0.1, application/json").build()));
+        assertFalse(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1")
+                .header("Accept", "*/*;q=0.1, application/cbor").build()));
+        assertFalse(ErrorBodies.acceptsJson(MockServerHttpRequest.get("/users/1")
+                .header("Accept", "application/json;q=0").build()));
+    }
+
+    private static List<String> fieldNames(final JsonNode node) {
+        final List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
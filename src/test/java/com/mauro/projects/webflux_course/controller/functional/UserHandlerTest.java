@@ -0,0 +1,240 @@
+package com.mauro.projects.webflux_course.controller.functional;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserFields;
+import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.model.response.UserImportProgress;
+import com.mauro.projects.webflux_course.model.response.UserResponse;
+import com.mauro.projects.webflux_course.service.NotFound;
+import com.mauro.projects.webflux_course.service.UserImportService;
+import com.mauro.projects.webflux_course.service.UserService;
+import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import com.mauro.projects.webflux_course.service.exception.PreconditionFailedException;
+import com.mongodb.reactivestreams.client.MongoClient;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.web.reactive.function.BodyInserters.fromValue;
+import static reactor.core.publisher.Mono.just;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"users.web.style=functional", "users.warm-up.enabled=false"})
+@AutoConfigureWebTestClient
+class UserHandlerTest {
+
+    private static final String ID = "65f1c0ffee0000000000abcd";
+    private static final String NAME = "Mauro";
+    private static final String EMAIL = "maurovidal@mail.com";
+    private static final String PASSWORD = "123";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @MockBean
+    private UserService service;
+
+    @MockBean
+    private UserImportService importService;
+
+    @MockBean
+    private UserMapper mapper;
+
+    @MockBean
+    private MongoClient mongoClient;
+
+    @Test
+    @DisplayName("Test functional routes are registered when the style is functional")
+    void testHandlerIsRegistered() {
+        assertEquals(1, context.getBeansOfType(UserHandler.class).size());
+    }
+
+    @Test
+    @DisplayName("Test functional save with success")
+    void testSaveWithSuccess() {
+        when(service.save(any(UserRequest.class))).thenReturn(just(User.builder().build()));
+
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .body(fromValue(new UserRequest(NAME, EMAIL, PASSWORD)))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Test functional save answers the same validation error body")
+    void testSaveWithBadRequest() {
+        webTestClient.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .body(fromValue(new UserRequest(" Mauro", EMAIL, PASSWORD)))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.path").isEqualTo("/users")
+                .jsonPath("$.status").isEqualTo(BAD_REQUEST.value())
+                .jsonPath("$.error").isEqualTo("Validation Error")
+                .jsonPath("$.message").isEqualTo("Error on validation attributes")
+                .jsonPath("$.errors[0].fieldName").isEqualTo("name")
+                .jsonPath("$.errors[0].message").isEqualTo("field cannot have blank spaces at the beginning or at end");
+
+        verify(service, never()).save(any(UserRequest.class));
+    }
+
+    @Test
+    @DisplayName("Test functional find by id returns etag, sparse fields and not modified")
+    void testFindByIdWithETag() {
+        when(service.findById(ID)).thenReturn(just(User.builder().version(4L).build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.get().uri("/users/" + ID + "?fields=id,email")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ETAG)
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(ID)
+                .jsonPath("$.email").isEqualTo(EMAIL)
+                .jsonPath("$.name").doesNotExist();
+
+        webTestClient.get().uri("/users/" + ID)
+                .accept(APPLICATION_JSON)
+                .header(IF_NONE_MATCH, "\"4\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Test functional find by id answers the same not found body")
+    void testFindByIdWithObjectNotFound() {
+        when(service.findById(ID)).thenReturn(NotFound.byId(Mono.empty(), ID));
+
+        webTestClient.get().uri("/users/" + ID)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.path").isEqualTo("/users/" + ID)
+                .jsonPath("$.status").isEqualTo(NOT_FOUND.value())
+                .jsonPath("$.error").isEqualTo("Not Found")
+                .jsonPath("$.message").isEqualTo(format("Object not found. Id: %s, Type: %s", ID, User.class.getSimpleName()));
+    }
+
+    @Test
+    @DisplayName("Test functional find all streams the collection with its etag")
+    void testFindAll() {
+        when(service.collectionVersion()).thenReturn(just(7L));
+        when(service.findAll(any(UserFields.class))).thenReturn(Flux.just(User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(ID, NAME, EMAIL));
+
+        webTestClient.get().uri("/users/all")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ETAG)
+                .expectBody()
+                .jsonPath("$.[0].id").isEqualTo(ID)
+                .jsonPath("$.[0].password").doesNotExist();
+
+        verify(service).findAll(UserFields.DEFAULT);
+    }
+
+    @Test
+    @DisplayName("Test functional update with stale if-match")
+    void testUpdateWithPreconditionFailed() {
+        when(service.update(eq(ID), any(UserRequest.class), eq(4L)))
+                .thenReturn(Mono.error(new PreconditionFailedException("Version mismatch")));
+
+        webTestClient.patch().uri("/users/" + ID)
+                .contentType(APPLICATION_JSON)
+                .header(IF_MATCH, "\"4\"")
+                .body(fromValue(new UserRequest(NAME, null, null)))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(PRECONDITION_FAILED.value())
+                .jsonPath("$.message").isEqualTo("Version mismatch");
+    }
+
+    @Test
+    @DisplayName("Test functional delete maps errors thrown before subscription")
+    void testDeleteWithNotFound() {
+        when(service.delete(anyString(), isNull())).thenThrow(ObjectNotFoundException.forId(ID, User.class));
+
+        webTestClient.delete().uri("/users/" + ID)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(NOT_FOUND.value());
+    }
+
+    @Test
+    @DisplayName("Test routes outside the functional set still reach the annotated controller")
+    void testExportStillServedByController() {
+        when(service.export(any())).thenReturn(Flux.empty());
+
+        webTestClient.get().uri("/users/export?format=csv")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    @DisplayName("Test batch and import posts are not taken for a single save")
+    void testBatchAndImportStillServedByController() {
+        when(service.saveAll(any())).thenReturn(Flux.just(UserBatchItemResponse.created(0, ID, EMAIL)));
+        when(importService.importUsers(any())).thenReturn(Flux.just(new UserImportProgress(1, 1, 0, List.of())));
+
+        webTestClient.post().uri("/users/batch")
+                .contentType(APPLICATION_JSON)
+                .accept(APPLICATION_JSON)
+                .body(fromValue(List.of(new UserRequest(NAME, EMAIL, PASSWORD))))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(ID);
+
+        webTestClient.post().uri("/users/import")
+                .contentType(APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Mauro\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(1);
+
+        verify(service, never()).save(any(UserRequest.class));
+    }
+}
@@ -0,0 +1,152 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.DuplicateKeyMessages;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryUserRepositoryTest {
+
+    private final InMemoryUserRepository repository = new InMemoryUserRepository();
+
+    @Test
+    void testSaveAssignsIdAndVersionAndHidesPasswordOnRead() {
+        User saved = repository.save(user("valdir@mail.com")).block();
+
+        assertNotNull(saved.getId());
+        assertEquals(0L, saved.getVersion());
+
+        StepVerifier.create(repository.findById(saved.getId()))
+                .expectNextMatches(found -> found.getEmail().equals("valdir@mail.com") && found.getPassword() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    void testRejectDuplicateEmail() {
+        repository.save(user("valdir@mail.com")).block();
+
+        StepVerifier.create(repository.save(user("valdir@mail.com")))
+                .expectErrorMatches(ex -> ex instanceof DuplicateKeyException
+                        && DuplicateKeyMessages.resolve(ex.getMessage()).equals("E-mail already registered"))
+                .verify();
+    }
+
+    @Test
+    void testInsertAllReportsDuplicatesPerPosition() {
+        BulkInsertResult result = repository.insertAll(List.of(
+                user("a@mail.com"), user("a@mail.com"), user("b@mail.com")
+        )).block();
+
+        assertEquals(Set.of(1), result.errors().keySet());
+        assertTrue(result.errors().get(1) instanceof DuplicateKeyException);
+        assertEquals(2, repository.findAll(Set.of("email")).count().block());
+    }
+
+    @Test
+    void testFindAndModifyChecksVersionAndMovesEmailIndex() {
+        User saved = repository.save(user("old@mail.com")).block();
+
+        StepVerifier.create(repository.findAndModify(saved.getId(), 5L, new UserPatch(null, "new@mail.com", null)))
+                .verifyComplete();
+
+        StepVerifier.create(repository.findAndModify(saved.getId(), 0L, new UserPatch(null, "new@mail.com", null)))
+                .expectNextMatches(user -> user.getVersion() == 1L && user.getEmail().equals("new@mail.com"))
+                .verifyComplete();
+
+        StepVerifier.create(repository.save(user("old@mail.com")))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void testFindPageWalksIdsInOrder() {
+        List<User> saved = List.of(
+                repository.save(user("a@mail.com")).block(),
+                repository.save(user("b@mail.com")).block(),
+                repository.save(user("c@mail.com")).block()
+        );
+
+        StepVerifier.create(repository.findPage(saved.get(0).getId(), 1, Set.of("name")))
+                .expectNextMatches(user -> user.getId().equals(saved.get(1).getId())
+                        && user.getName() != null && user.getEmail() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    void testUpsertAllByEmailInsertsNewAndUpdatesExisting() {
+        User existing = repository.save(user("a@mail.com")).block();
+
+        BulkUpsertResult result = repository.upsertAllByEmail(List.of(
+                user("a@mail.com").toBuilder().name("Mauro").build(), user("b@mail.com")
+        )).block();
+
+        assertEquals(1, result.inserted());
+        assertEquals(1, result.updated());
+        assertEquals(existing.getId(), result.users().get(0).getId());
+        StepVerifier.create(repository.findByEmail("a@mail.com"))
+                .expectNextMatches(user -> user.getName().equals("Mauro") && user.getVersion() == 1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void testUpsertAllByEmailReportsIdCollisionsPerPosition() {
+        User existing = repository.save(user("a@mail.com")).block();
+
+        BulkUpsertResult result = repository.upsertAllByEmail(List.of(
+                user("b@mail.com").toBuilder().id(existing.getId()).build(), user("c@mail.com")
+        )).block();
+
+        assertEquals(Set.of(0), result.errors().keySet());
+        assertTrue(result.errors().get(0) instanceof DuplicateKeyException);
+        assertEquals(1, result.inserted());
+        StepVerifier.create(repository.findById(existing.getId()).map(User::getEmail))
+                .expectNext("a@mail.com")
+                .verifyComplete();
+    }
+
+    @Test
+    void testFindCreatedSinceUsesIdTimestamp() {
+        User old = repository.save(user("old@mail.com").toBuilder()
+                .id(new ObjectId(Date.from(Instant.parse("2020-01-01T00:00:00Z"))).toHexString())
+                .build()).block();
+        User recent = repository.save(user("new@mail.com")).block();
+
+        StepVerifier.create(repository.findCreatedSince(Instant.parse("2021-01-01T00:00:00Z")))
+                .expectNextMatches(user -> user.getId().equals(recent.getId()) && user.getPassword() == null)
+                .verifyComplete();
+
+        StepVerifier.create(repository.findCreatedSince(null).map(User::getId))
+                .expectNext(old.getId(), recent.getId())
+                .verifyComplete();
+    }
+
+    @Test
+    void testFindAndRemoveReleasesEmail() {
+        User saved = repository.save(user("valdir@mail.com")).block();
+
+        StepVerifier.create(repository.findAndRemove(saved.getId()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertNull(repository.findById(saved.getId()).block());
+        StepVerifier.create(repository.save(user("valdir@mail.com")))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private static User user(String email) {
+        return User.builder().name("Valdir").email(email).password("hash").build();
+    }
+}
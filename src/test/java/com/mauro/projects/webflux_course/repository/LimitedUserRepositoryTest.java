@@ -0,0 +1,67 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LimitedUserRepositoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UserRepository delegate = mock(UserRepository.class);
+
+    @Test
+    void testShedsReadsOverTheLimitWithoutBlockingWrites() {
+        UserProperties.Limiter config = new UserProperties.Limiter();
+        config.getReads().setInitialLimit(1);
+        LimitedUserRepository repository = new LimitedUserRepository(delegate, config, registry);
+
+        when(delegate.findById("1")).thenReturn(Mono.never());
+        when(delegate.insertAll(List.of())).thenReturn(Mono.just(new BulkInsertResult(List.of(), Map.of())));
+
+        Disposable pending = repository.findById("1").subscribe();
+
+        StepVerifier.create(repository.findById("1"))
+                .expectErrorMatches(ex -> ex instanceof ServiceUnavailableException
+                        && ex.getMessage().equals("Too many concurrent user reads, try again later"))
+                .verify();
+        StepVerifier.create(repository.insertAll(List.of()).map(BulkInsertResult::users))
+                .expectNext(List.<User>of())
+                .verifyComplete();
+
+        assertEquals(1.0, registry.get("users.limiter.rejections").tag("kind", "read").counter().count());
+        assertEquals(0.0, registry.get("users.limiter.rejections").tag("kind", "write").counter().count());
+        assertEquals(1.0, registry.get("users.limiter.in-flight").tag("kind", "read").gauge().value());
+        pending.dispose();
+    }
+
+    @Test
+    void testTimeoutAroundTheRepositoryShrinksTheLimit() {
+        UserProperties.Limiter config = new UserProperties.Limiter();
+        config.getReads().setInitialLimit(20);
+        LimitedUserRepository repository = new LimitedUserRepository(
+                delegate, config, operation -> Duration.ofMillis(50), registry
+        );
+
+        when(delegate.findById("1")).thenReturn(Mono.never());
+
+        StepVerifier.create(repository.findById("1").timeout(Duration.ofMillis(50)))
+                .expectError(TimeoutException.class)
+                .verify();
+
+        assertEquals(18.0, registry.get("users.limiter.limit").tag("kind", "read").gauge().value());
+    }
+}
@@ -0,0 +1,94 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.service.exception.GatewayTimeoutException;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResilientUserRepositoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UserRepository delegate = mock(UserRepository.class);
+    private final UserProperties.Resilience config = new UserProperties.Resilience();
+
+    @Test
+    void testTimeoutsBecomeGatewayTimeoutsAndOpenTheBreaker() {
+        config.setDefaultTimeout(Duration.ofMillis(20));
+        config.getCircuitBreaker().setMinimumCalls(2);
+        ResilientUserRepository repository = new ResilientUserRepository(delegate, config, registry);
+        when(delegate.existsById("1")).thenReturn(Mono.never());
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(repository.existsById("1"))
+                    .expectErrorMatches(ex -> ex instanceof GatewayTimeoutException
+                            && ex.getMessage().equals("User repository existsById did not answer within PT0.02S"))
+                    .verify();
+        }
+
+        StepVerifier.create(repository.existsById("1"))
+                .expectErrorMatches(ex -> ex instanceof ServiceUnavailableException unavailable
+                        && unavailable.getRetryAfter().toSeconds() == 9)
+                .verify();
+    }
+
+    @Test
+    void testStreamsTimeOnlyTheFirstElementAndNotTheConsumer() {
+        config.setDefaultTimeout(Duration.ofMillis(50));
+        config.getCircuitBreaker().setMinimumCalls(2);
+        ResilientUserRepository repository = new ResilientUserRepository(delegate, config, registry);
+        when(delegate.findAllEmails()).thenReturn(Flux.just("a@mail.com", "b@mail.com", "c@mail.com"));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(repository.findAllEmails(), 0)
+                    .thenAwait(Duration.ofMillis(100))
+                    .thenRequest(1)
+                    .expectNext("a@mail.com")
+                    .thenAwait(Duration.ofMillis(100))
+                    .thenRequest(2)
+                    .expectNext("b@mail.com", "c@mail.com")
+                    .verifyComplete();
+        }
+
+        when(delegate.findAllEmails()).thenReturn(Flux.never());
+        StepVerifier.create(repository.findAllEmails())
+                .expectError(GatewayTimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testHedgedFindByIdTakesTheFasterAttempt() {
+        config.getHedging().setEnabled(true);
+        config.getHedging().setWindowSize(64);
+        ResilientUserRepository repository = new ResilientUserRepository(delegate, config, registry);
+
+        final User user = User.builder().id("1").build();
+        when(delegate.findById("1")).thenReturn(Mono.just(user));
+        for (int i = 0; i < 64; i++) {
+            repository.findById("1").block();
+        }
+
+        final AtomicInteger attempts = new AtomicInteger();
+        when(delegate.findById("1")).thenReturn(Mono.defer(() -> attempts.incrementAndGet() == 1
+                ? Mono.never()
+                : Mono.just(user)));
+
+        StepVerifier.create(repository.findById("1"))
+                .expectNext(user)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, registry.get("users.repository.hedges").counter().count());
+    }
+}
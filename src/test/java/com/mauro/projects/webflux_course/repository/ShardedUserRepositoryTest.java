@@ -0,0 +1,240 @@
+package com.mauro.projects.webflux_course.repository;
+
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.support.ConsistentHashRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
+
+class ShardedUserRepositoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, UserRepository> shards = shards("a", "b", "c");
+    private final ShardedUserRepository repository =
+            new ShardedUserRepository(shards, 160, new InMemoryEmailDirectory(), registry);
+
+    @Test
+    void testEachUserLivesOnOneShard() {
+        final List<User> saved = saveUsers(30);
+
+        for (User user : saved) {
+            final long copies = shards.values().stream()
+                    .filter(shard -> Boolean.TRUE.equals(shard.existsById(user.getId()).block()))
+                    .count();
+            assertEquals(1, copies);
+            StepVerifier.create(repository.findById(user.getId()))
+                    .expectNextMatches(found -> found.getEmail().equals(user.getEmail()) && found.getPassword() == null)
+                    .verifyComplete();
+        }
+        assertTrue(shards.values().stream().allMatch(shard -> shard.findAll(List.of()).hasElements().block()));
+    }
+
+    @Test
+    void testUppercaseIdsRouteToTheSameShard() {
+        final Map<String, UserRepository> spied = new LinkedHashMap<>();
+        shards.forEach((name, shard) -> spied.put(name, spy(shard)));
+        final ShardedUserRepository sharded = new ShardedUserRepository(spied, 160, new InMemoryEmailDirectory(), registry);
+
+        for (int i = 0; i < 10; i++) {
+            final String id = new ObjectId().toHexString();
+            sharded.existsById(id).block();
+            sharded.existsById(id.toUpperCase()).block();
+
+            final long routed = spied.values().stream()
+                    .filter(shard -> mockingDetails(shard).getInvocations().stream()
+                            .anyMatch(call -> call.getArguments()[0].equals(id.toUpperCase())))
+                    .filter(shard -> mockingDetails(shard).getInvocations().stream()
+                            .anyMatch(call -> call.getArguments()[0].equals(id)))
+                    .count();
+            assertEquals(1, routed);
+        }
+    }
+
+    @Test
+    void testEmailsStayUniqueAcrossShards() {
+        repository.save(user("valdir@mail.com")).block();
+
+        StepVerifier.create(repository.save(user("valdir@mail.com"))).verifyError(DuplicateKeyException.class);
+        StepVerifier.create(repository.existsByEmail("valdir@mail.com")).expectNext(true).verifyComplete();
+        StepVerifier.create(repository.findByEmail("valdir@mail.com"))
+                .expectNextMatches(found -> found.getEmail().equals("valdir@mail.com"))
+                .verifyComplete();
+
+        final BulkInsertResult result = repository.insertAll(List.of(
+                user("first@mail.com"), user("valdir@mail.com"), user("first@mail.com"), user("second@mail.com")
+        )).block();
+        assertEquals(List.of(false, true, true, false), IntStream.range(0, 4).mapToObj(result::failed).toList());
+        StepVerifier.create(repository.findAllEmails().collectList().map(List::size)).expectNext(3).verifyComplete();
+    }
+
+    @Test
+    void testUpsertByEmailKeepsTheSameUser() {
+        final BulkUpsertResult inserted = repository.upsertAllByEmail(List.of(user("valdir@mail.com"))).block();
+        final BulkUpsertResult updated = repository.upsertAllByEmail(
+                List.of(user("valdir@mail.com").toBuilder().name("Valdir Renamed").build())
+        ).block();
+
+        assertEquals(1, inserted.inserted());
+        assertEquals(1, updated.updated());
+        assertEquals(inserted.users().get(0).getId(), updated.users().get(0).getId());
+        StepVerifier.create(repository.findById(inserted.users().get(0).getId()).map(User::getName))
+                .expectNext("Valdir Renamed")
+                .verifyComplete();
+    }
+
+    @Test
+    void testPagesAndExportsMergeInIdOrder() {
+        final List<String> ids = saveUsers(25).stream().map(User::getId).sorted().toList();
+
+        StepVerifier.create(repository.findPage(null, 10, List.of("name")).map(User::getId).collectList())
+                .expectNext(ids.subList(0, 10))
+                .verifyComplete();
+        StepVerifier.create(repository.findPage(ids.get(9), 10, List.of("name")).map(User::getId).collectList())
+                .expectNext(ids.subList(10, 20))
+                .verifyComplete();
+        StepVerifier.create(repository.findCreatedSince(null).map(User::getId).collectList())
+                .expectNext(ids)
+                .verifyComplete();
+    }
+
+    @Test
+    void testChangingOrRemovingUserReleasesItsEmail() {
+        final User first = repository.save(user("first@mail.com")).block();
+        final User second = repository.save(user("second@mail.com")).block();
+
+        StepVerifier.create(repository.findAndModify(first.getId(), new UserPatch(null, "second@mail.com", null)))
+                .verifyError(DuplicateKeyException.class);
+        StepVerifier.create(repository.findAndModify(first.getId(), new UserPatch(null, "renamed@mail.com", null)))
+                .expectNextMatches(updated -> updated.getEmail().equals("renamed@mail.com"))
+                .verifyComplete();
+        StepVerifier.create(repository.findAndRemove(second.getId())).expectNextCount(1).verifyComplete();
+
+        StepVerifier.create(repository.save(user("first@mail.com"))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.save(user("second@mail.com"))).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void testReadsFallBackAndWritesMoveFirstWhileRebalancing() {
+        final List<User> saved = saveUsers(60);
+        final InMemoryUserRepository added = new InMemoryUserRepository();
+
+        repository.beginRebalance("d", added);
+        final User moving = saved.stream().filter(user -> repository.moving(user.getId())).findFirst().orElseThrow();
+
+        StepVerifier.create(repository.findById(moving.getId())).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.findAndModify(moving.getId(), new UserPatch("Moved First", null, null)))
+                .expectNextMatches(updated -> updated.getName().equals("Moved First"))
+                .verifyComplete();
+
+        assertTrue(added.existsById(moving.getId()).block());
+        assertEquals(1, added.findAll(List.of()).count().block());
+        assertEquals(59, shards.values().stream().mapToLong(shard -> shard.findAll(List.of()).count().block()).sum());
+    }
+
+    @Test
+    void testAddingShardMovesOnlyItsUsers() {
+        final List<User> saved = saveUsers(60);
+        final InMemoryUserRepository joined = new InMemoryUserRepository();
+
+        final long moved = new ShardRebalancer(repository, Map.of("d", joined), 4, registry).joinAll().block();
+
+        assertTrue(moved > 0);
+        assertEquals(moved, joined.findAll(List.of()).count().block());
+        assertEquals(60, repository.findAll(List.of()).count().block());
+        for (User user : saved) {
+            assertFalse(repository.moving(user.getId()));
+            StepVerifier.create(repository.findCompleteById(user.getId()))
+                    .expectNextMatches(found -> found.getPassword().equals("secret") && found.getVersion() == 0L)
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void testFailedShardWriteReleasesItsClaims() {
+        final InMemoryEmailDirectory directory = new InMemoryEmailDirectory();
+        final UserRepository failing = spy(new InMemoryUserRepository());
+        doReturn(Mono.error(new DataAccessResourceFailureException("shard down"))).when(failing).insertAll(any());
+        final Map<String, UserRepository> mixed = new LinkedHashMap<>(Map.of("a", new InMemoryUserRepository(), "b", failing));
+        final ShardedUserRepository sharded = new ShardedUserRepository(mixed, 160, directory, registry);
+
+        final List<User> users = IntStream.range(0, 20).mapToObj(i -> user("user" + i + "@mail.com")).toList();
+        final BulkInsertResult result = sharded.insertAll(users).block();
+
+        final ConsistentHashRing<UserRepository> ring = new ConsistentHashRing<>(mixed, 160);
+        for (int i = 0; i < users.size(); i++) {
+            final boolean onFailing = ring.nodeFor(users.get(i).getId()) == failing;
+            assertEquals(onFailing, result.failed(i));
+            assertEquals(!onFailing, directory.idOf(users.get(i).getEmail()).blockOptional().isPresent());
+        }
+        assertTrue(result.errors().values().stream().allMatch(DataAccessResourceFailureException.class::isInstance));
+
+        final ShardedUserRepository down = new ShardedUserRepository(Map.of("b", failing), 160, directory, registry);
+        StepVerifier.create(down.insertAll(List.of(user("lost@mail.com")))).verifyError(DataAccessResourceFailureException.class);
+        StepVerifier.create(directory.idOf("lost@mail.com")).verifyComplete();
+    }
+
+    @Test
+    void testCancelledBatchReleasesItsClaims() {
+        final InMemoryEmailDirectory directory = new InMemoryEmailDirectory();
+        final UserRepository stuck = spy(new InMemoryUserRepository());
+        doReturn(Mono.never()).when(stuck).upsertAllByEmail(any());
+        final ShardedUserRepository sharded = new ShardedUserRepository(Map.of("a", stuck), 160, directory, registry);
+
+        StepVerifier.create(sharded.upsertAllByEmail(List.of(user("valdir@mail.com"), user("valdir@mail.com")))
+                        .timeout(Duration.ofMillis(50)))
+                .verifyError(TimeoutException.class);
+
+        StepVerifier.create(directory.emails()).verifyComplete();
+    }
+
+    @Test
+    void testUpsertGivesRepeatedEmailsOneId() {
+        final BulkUpsertResult result = repository.upsertAllByEmail(List.of(
+                user("valdir@mail.com"), user("mauro@mail.com"), user("valdir@mail.com").toBuilder().name("Valdir Renamed").build()
+        )).block();
+
+        assertEquals(result.users().get(0).getId(), result.users().get(2).getId());
+        assertFalse(result.failed(0) || result.failed(1) || result.failed(2));
+        StepVerifier.create(repository.findByEmail("valdir@mail.com").map(User::getName))
+                .expectNext("Valdir Renamed")
+                .verifyComplete();
+    }
+
+    private List<User> saveUsers(final int count) {
+        final List<User> saved = new ArrayList<>();
+        IntStream.range(0, count).forEach(i -> saved.add(repository.save(user("user" + i + "@mail.com")).block()));
+        return saved;
+    }
+
+    private static Map<String, UserRepository> shards(final String... names) {
+        final Map<String, UserRepository> shards = new LinkedHashMap<>();
+        for (String name : names) {
+            shards.put(name, new InMemoryUserRepository());
+        }
+        return shards;
+    }
+
+    private static User user(final String email) {
+        return User.builder().name("Valdir").email(email).password("secret").build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mauro.projects.webflux_course.security;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        hasher.destroy();
+    }
+
+    @Test
+    void testHashOffTheCallerThread() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        hasher = new PasswordHasher(encoder, config(1, 1), registry);
+
+        String hash = hasher.hash("secret").block(Duration.ofSeconds(5));
+
+        assertNotEquals("secret", hash);
+        assertTrue(encoder.matches("secret", hash));
+        assertEquals(1, registry.get("users.password.hash").timer().count());
+    }
+
+    @Test
+    void testRejectWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hasher = new PasswordHasher(blockingEncoder(started, release), config(1, 1), registry);
+
+        Disposable running = hasher.hash("first").subscribe();
+        started.await();
+        Disposable queued = hasher.hash("second").subscribe();
+
+        assertEquals(1.0, registry.get("users.password.hash.queue").gauge().value());
+
+        StepVerifier.create(hasher.hash("third"))
+                .expectError(ServiceUnavailableException.class)
+                .verify(Duration.ofSeconds(5));
+
+        release.countDown();
+        running.dispose();
+        queued.dispose();
+    }
+
+    private static UserProperties.Hashing config(int threads, int queueCapacity) {
+        UserProperties.Hashing config = new UserProperties.Hashing();
+        config.setThreads(threads);
+        config.setQueueCapacity(queueCapacity);
+        return config;
+    }
+
+    private static PasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hashed";
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return false;
+            }
+        };
+    }
+}
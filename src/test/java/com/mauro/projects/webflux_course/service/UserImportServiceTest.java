@@ -0,0 +1,108 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mauro.projects.webflux_course.cache.RegisteredEmails;
+import com.mauro.projects.webflux_course.cache.UserCache;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.mapper.UserMapperImpl;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryUserRepository;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTest {
+
+    private final InMemoryUserRepository repository = new InMemoryUserRepository();
+    private final InMemoryChangeCounterRepository changeCounter = new InMemoryChangeCounterRepository();
+    private final PasswordHasher passwordHasher = mock(PasswordHasher.class);
+    private final RegisteredEmails registeredEmails = mock(RegisteredEmails.class);
+    private UserImportService service;
+
+    @BeforeEach
+    void setUp() {
+        UserProperties properties = new UserProperties();
+        properties.getBatch().setChunkSize(2);
+
+        when(passwordHasher.parallelism()).thenReturn(2);
+        when(passwordHasher.hash(anyString())).thenAnswer(invocation -> Mono.just("hashed:" + invocation.getArgument(0)));
+
+        service = new UserImportService(
+                repository, changeCounter, new UserMapperImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), properties,
+                new UserCache(properties, new SimpleMeterRegistry()), passwordHasher, registeredEmails
+        );
+    }
+
+    @Test
+    void testReportsRunningTotalsAndRejectedLinesPerChunk() {
+        Flux<String> lines = Flux.just(
+                "{\"name\":\"Valdir\",\"email\":\"valdir@mail.com\",\"password\":\"123\"}",
+                "{\"name\":\"Va\",\"email\":\"invalid\",\"password\":\"123\"}",
+                "",
+                "{\"name\":",
+                "{\"name\":\"Mauro\",\"email\":\"mauro@mail.com\",\"password\":\"456\"}"
+        );
+
+        StepVerifier.create(service.importUsers(lines))
+                .expectNextMatches(progress -> progress.lines() == 2 && progress.accepted() == 1 && progress.rejected() == 1
+                        && progress.rejections().get(0).index() == 2
+                        && progress.rejections().get(0).errors().size() == 2)
+                .expectNextMatches(progress -> progress.lines() == 4 && progress.accepted() == 2 && progress.rejected() == 2
+                        && progress.rejections().equals(List.of(
+                                UserBatchItemResponse.failed(4, null, "Malformed JSON line", List.of()))))
+                .verifyComplete();
+
+        assertEquals(2, repository.findAll(List.of("email")).count().block());
+        assertEquals(2L, changeCounter.current(ChangeCounterRepository.USERS).block());
+        verify(registeredEmails).add("mauro@mail.com");
+    }
+
+    @Test
+    void testUpsertsExistingUsersByEmail() {
+        User existing = repository.save(User.builder().name("Valdir").email("valdir@mail.com").password("old").build()).block();
+
+        StepVerifier.create(service.importUsers(Flux.just(
+                        "{\"name\":\"Valdir Vidal\",\"email\":\"valdir@mail.com\",\"password\":\"123\"}"
+                )))
+                .expectNextMatches(progress -> progress.accepted() == 1 && progress.rejected() == 0)
+                .verifyComplete();
+
+        User updated = repository.findByEmail("valdir@mail.com").block();
+        assertEquals(existing.getId(), updated.getId());
+        assertEquals("Valdir Vidal", updated.getName());
+        assertEquals(1L, updated.getVersion());
+    }
+
+    @Test
+    void testRejectsLinesTurnedAwayByTheHashingPool() {
+        when(passwordHasher.hash("456")).thenReturn(Mono.error(new ServiceUnavailableException("Password hashing is saturated, try again later")));
+
+        StepVerifier.create(service.importUsers(Flux.just(
+                        "{\"name\":\"Valdir\",\"email\":\"valdir@mail.com\",\"password\":\"123\"}",
+                        "{\"name\":\"Mauro\",\"email\":\"mauro@mail.com\",\"password\":\"456\"}"
+                )))
+                .expectNextMatches(progress -> progress.accepted() == 1 && progress.rejections().equals(List.of(
+                        UserBatchItemResponse.failed(2, "mauro@mail.com", "Password hashing is saturated, try again later", List.of()))))
+                .verifyComplete();
+
+        assertEquals(1, repository.findAll(List.of("email")).count().block());
+    }
+}
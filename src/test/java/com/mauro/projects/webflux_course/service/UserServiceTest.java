@@ -1,24 +1,48 @@
 package com.mauro.projects.webflux_course.service;
 
+import com.mauro.projects.webflux_course.cache.RegisteredEmails;
+import com.mauro.projects.webflux_course.cache.UserCache;
+import com.mauro.projects.webflux_course.config.UserProperties;
 import com.mauro.projects.webflux_course.entity.User;
 import com.mauro.projects.webflux_course.mapper.UserMapper;
+import com.mauro.projects.webflux_course.model.request.UserFields;
 import com.mauro.projects.webflux_course.model.request.UserRequest;
+import com.mauro.projects.webflux_course.model.response.UserBatchItemResponse;
+import com.mauro.projects.webflux_course.repository.BulkInsertResult;
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.UserPatch;
 import com.mauro.projects.webflux_course.repository.UserRepository;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.exception.DuplicateKeyMessages;
+import com.mauro.projects.webflux_course.service.exception.InvalidPageTokenException;
 import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import com.mauro.projects.webflux_course.service.exception.PreconditionFailedException;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import com.mauro.projects.webflux_course.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import static java.lang.String.format;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -28,22 +52,56 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
 
+    private static final String PAGE_AFTER = "65f1c0ffee0000000000abcd";
+
     @Mock
     private UserRepository repository;
 
+    @Mock
+    private ChangeCounterRepository changeCounter;
+
     @Mock
     private UserMapper mapper;
 
+    @Mock
+    private Validator validator;
+
+    @Spy
+    private UserProperties properties = new UserProperties();
+
+    @Spy
+    private UserCache cache = new UserCache(disabledCache(), new SimpleMeterRegistry());
+
+    @Spy
+    private SingleFlight<String, User> findByIdFlight = new SingleFlight<>("test", new SimpleMeterRegistry());
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private RegisteredEmails registeredEmails;
+
+    @Mock
+    private UserWriteBuffer writeBuffer;
+
     @InjectMocks
     private UserService service;
 
+    private static UserProperties disabledCache() {
+        UserProperties properties = new UserProperties();
+        properties.getCache().setEnabled(false);
+        return properties;
+    }
+
     @Test
     void testSave() {
         UserRequest request = new UserRequest("valdir", "valdir@mail.com", "123");
         User entity = User.builder().build();
 
-        when(mapper.toEntity(ArgumentMatchers.any(UserRequest.class))).thenReturn(entity);
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(mapper.toEntity(new UserRequest("valdir", "valdir@mail.com", "hashed"))).thenReturn(entity);
         when(repository.save(ArgumentMatchers.any(User.class))).thenReturn(Mono.just(User.builder().build()));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
 
         Mono<User> result = service.save(request);
 
@@ -53,9 +111,163 @@ class UserServiceTest {
                 .verify();
 
         verify(repository, times(1)).save(any(User.class));
+        verify(cache, times(1)).put(any(User.class));
 
     }
 
+    @Test
+    void testSaveAnswersOnlyAfterTheChangeCounterMoved() {
+        UserRequest request = new UserRequest("valdir", "valdir@mail.com", "123");
+
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(User.builder().build());
+        when(repository.save(any(User.class))).thenReturn(Mono.just(User.builder().id("1").build()));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.never());
+
+        StepVerifier.create(service.save(request))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify();
+
+        when(changeCounter.increment(anyString())).thenReturn(Mono.error(new IllegalStateException("counter down")));
+
+        StepVerifier.create(service.save(request))
+                .expectNextMatches(user -> user.getId().equals("1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void testSaveThroughWriteBuffer() {
+        UserRequest request = new UserRequest("valdir", "valdir@mail.com", "123");
+        User entity = User.builder().build();
+
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(entity);
+        when(writeBuffer.isEnabled()).thenReturn(true);
+        when(writeBuffer.insert(entity)).thenReturn(Mono.just(User.builder().id("1").build()));
+
+        StepVerifier.create(service.save(request))
+                .expectNextMatches(user -> user.getId().equals("1"))
+                .verifyComplete();
+
+        verify(repository, never()).save(any(User.class));
+        verify(changeCounter, never()).increment(anyString());
+    }
+
+    @Test
+    void testSaveWithKnownEmail() {
+        UserRequest request = new UserRequest("valdir", "valdir@mail.com", "123");
+
+        when(registeredEmails.mightContain("valdir@mail.com")).thenReturn(true);
+        when(repository.existsByEmail("valdir@mail.com")).thenReturn(Mono.just(true));
+
+        StepVerifier.create(service.save(request))
+                .expectErrorMatches(ex -> ex instanceof DuplicateKeyException
+                        && DuplicateKeyMessages.resolve(ex.getMessage()).equals("E-mail already registered"))
+                .verify();
+
+        verify(passwordHasher, never()).hash(anyString());
+        verify(repository, never()).save(any(User.class));
+    }
+
+    @Test
+    void testSaveSkipsDuplicateCheckForEmailRuledOutByFilter() {
+        UserRequest request = new UserRequest("valdir", "valdir@mail.com", "123");
+
+        when(registeredEmails.mightContain("valdir@mail.com")).thenReturn(false);
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(User.builder().build());
+        when(repository.save(any(User.class))).thenReturn(Mono.just(User.builder().build()));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(service.save(request))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(repository, never()).existsByEmail(anyString());
+    }
+
+    @Test
+    void testFindByEmailAlwaysQueriesRepository() {
+        when(repository.findByEmail("valdir@mail.com")).thenReturn(Mono.just(User.builder().build()));
+        when(repository.existsByEmail("valdir@mail.com")).thenReturn(Mono.just(true));
+
+        StepVerifier.create(service.findByEmail("valdir@mail.com"))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(service.existsByEmail("valdir@mail.com"))
+                .expectNext(true)
+                .verifyComplete();
+
+        verify(registeredEmails, never()).mightContain(anyString());
+    }
+
+    @Test
+    void testSaveAll() {
+        UserRequest first = new UserRequest("valdir", "valdir@mail.com", "123");
+        UserRequest second = new UserRequest("mauro", "mauro@mail.com", "123");
+        User created = User.builder().id("1").build();
+
+        when(passwordHasher.parallelism()).thenReturn(2);
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(created, User.builder().build());
+        when(repository.insertAll(ArgumentMatchers.anyList())).thenReturn(Mono.just(new BulkInsertResult(
+                List.of(created, User.builder().build()),
+                Map.of(1, new DuplicateKeyException("E11000 duplicate key error collection: user index: email dup key"))
+        )));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(service.saveAll(Flux.just(first, second)))
+                .expectNext(UserBatchItemResponse.created(0, "1", "valdir@mail.com"))
+                .expectNext(UserBatchItemResponse.failed(1, "mauro@mail.com", "E-mail already registered", List.of()))
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).insertAll(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    void testSaveAllKeepsInputOrder() {
+        UserRequest first = new UserRequest("valdir", "valdir@mail.com", "123");
+        UserRequest invalid = new UserRequest("", "mail", "123");
+        UserRequest third = new UserRequest("mauro", "mauro@mail.com", "123");
+
+        ConstraintViolation<?> violation = Mockito.mock(ConstraintViolation.class, Mockito.RETURNS_DEEP_STUBS);
+        when(validator.validate(any(UserRequest.class))).thenAnswer(invocation ->
+                invocation.getArgument(0) == invalid ? Set.of(violation) : Set.of());
+        when(passwordHasher.parallelism()).thenReturn(2);
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(User.builder().build());
+        when(repository.insertAll(ArgumentMatchers.anyList())).thenReturn(Mono.just(new BulkInsertResult(
+                List.of(User.builder().id("1").build(), User.builder().id("3").build()), Map.of()
+        )));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(service.saveAll(Flux.just(first, invalid, third)).map(UserBatchItemResponse::index))
+                .expectNext(0L, 1L, 2L)
+                .verifyComplete();
+    }
+
+    @Test
+    void testSaveAllRejectsItemsTurnedAwayByTheHashingPool() {
+        UserRequest first = new UserRequest("valdir", "valdir@mail.com", "123");
+        UserRequest second = new UserRequest("mauro", "mauro@mail.com", "456");
+        User created = User.builder().id("1").build();
+
+        when(passwordHasher.parallelism()).thenReturn(2);
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(passwordHasher.hash("456")).thenReturn(Mono.error(new ServiceUnavailableException("Password hashing is saturated, try again later")));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(created);
+        when(repository.insertAll(List.of(created))).thenReturn(Mono.just(new BulkInsertResult(List.of(created), Map.of())));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(service.saveAll(Flux.just(first, second)))
+                .expectNext(UserBatchItemResponse.created(0, "1", "valdir@mail.com"))
+                .expectNext(UserBatchItemResponse.failed(1, "mauro@mail.com", "Password hashing is saturated, try again later", List.of()))
+                .verifyComplete();
+    }
+
     @Test
     void testFindById() {
         when(repository.findById(anyString())).thenReturn(Mono.just(User.builder().build()));
@@ -70,52 +282,129 @@ class UserServiceTest {
 
     @Test
     void testFindAll() {
-        when(repository.findAll()).thenReturn(Flux.just(User.builder().build()));
+        when(repository.findAll(UserFields.DEFAULT.names())).thenReturn(Flux.just(User.builder().build()));
+
+        Flux<User> result = service.findAll(UserFields.DEFAULT);
+
+        StepVerifier.create(result)
+                .expectNextMatches(user -> user.getClass() == User.class)
+                .expectComplete()
+                .verify();
+
+        Mockito.verify(repository, times(1)).findAll(UserFields.DEFAULT.names());
 
-        Flux<User> result = service.findAll();
+    }
+
+    @Test
+    void testFindPage() {
+        when(repository.findPage(PAGE_AFTER, 2, UserFields.DEFAULT.names())).thenReturn(Flux.just(User.builder().build()));
+
+        Flux<User> result = service.findPage(PageToken.encode(PAGE_AFTER.toUpperCase()), 2, UserFields.DEFAULT);
 
         StepVerifier.create(result)
                 .expectNextMatches(user -> user.getClass() == User.class)
                 .expectComplete()
                 .verify();
 
-        Mockito.verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPage(PAGE_AFTER, 2, UserFields.DEFAULT.names());
+    }
 
+    @Test
+    void testFindPageWithInvalidToken() {
+        StepVerifier.create(service.findPage("not base64!", 2, UserFields.DEFAULT))
+                .expectError(InvalidPageTokenException.class)
+                .verify();
+        StepVerifier.create(service.findPage(PageToken.encode("123"), 2, UserFields.DEFAULT))
+                .expectError(InvalidPageTokenException.class)
+                .verify();
     }
 
     @Test
     void testUpdate() {
-        UserRequest request = new UserRequest("Mauro", "mauro@mail.com", "123");
+        UserRequest request = new UserRequest("Mauro", null, "123");
         User entity = User.builder().build();
 
-        when(mapper.toEntity(any(UserRequest.class), any(User.class))).thenReturn(entity);
-        when(repository.findById(anyString())).thenReturn(Mono.just(entity));
-        when(repository.save(any(User.class))).thenReturn(Mono.just(entity));
+        when(passwordHasher.hash("123")).thenReturn(Mono.just("hashed"));
+        when(repository.findAndModify(anyString(), isNull(), any(UserPatch.class))).thenReturn(Mono.just(entity));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
 
-        Mono<User> result = service.update("123", request);
+        Mono<User> result = service.update("123", request, null);
 
         StepVerifier.create(result)
                 .expectNextMatches(Objects::nonNull)
                 .expectComplete()
                 .verify();
 
-        verify(repository, times(1)).save(any(User.class));
+        verify(repository, times(1)).findAndModify("123", null, new UserPatch("Mauro", null, "hashed"));
+        verify(repository, never()).save(any(User.class));
+        verify(cache, times(1)).put(entity);
+    }
+
+    @Test
+    void testUpdateWithNotFound() {
+        UserRequest request = new UserRequest("Mauro", null, null);
+
+        when(repository.findAndModify(anyString(), isNull(), any(UserPatch.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.update("123", request, null))
+                .expectErrorMatches(ex -> ex instanceof ObjectNotFoundException
+                        && ex.getMessage().equals(format("Object not found. Id: %s, Type: %s", "123", User.class.getSimpleName())))
+                .verify();
+    }
+
+    @Test
+    void testUpdateWithoutChanges() {
+        UserRequest request = new UserRequest(null, null, null);
+
+        when(repository.findById(anyString())).thenReturn(Mono.just(User.builder().build()));
+
+        StepVerifier.create(service.update("123", request, null))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify();
+
+        verify(repository, never()).findAndModify(anyString(), any(), any(UserPatch.class));
+    }
 
+    @Test
+    void testUpdateWithVersionMismatch() {
+        UserRequest request = new UserRequest("Mauro", null, null);
+
+        when(repository.findAndModify("123", 3L, new UserPatch("Mauro", null, null))).thenReturn(Mono.empty());
+        when(repository.existsById("123")).thenReturn(Mono.just(true));
+
+        StepVerifier.create(service.update("123", request, 3L))
+                .expectError(PreconditionFailedException.class)
+                .verify();
+
+        verify(cache, never()).put(any(User.class));
+    }
+
+    @Test
+    void testDeleteWithVersionOfMissingUser() {
+        when(repository.findAndRemove("123", 3L)).thenReturn(Mono.empty());
+        when(repository.existsById("123")).thenReturn(Mono.just(false));
+
+        StepVerifier.create(service.delete("123", 3L))
+                .expectError(ObjectNotFoundException.class)
+                .verify();
     }
 
     @Test
     void testDelete() {
         User entity = User.builder().build();
-        when(repository.findAndRemove(anyString())).thenReturn(Mono.just(entity));
+        when(repository.findAndRemove(anyString(), isNull())).thenReturn(Mono.just(entity));
+        when(changeCounter.increment(anyString())).thenReturn(Mono.just(1L));
 
-        Mono<User> result = service.delete("123");
+        Mono<User> result = service.delete("123", null);
 
         StepVerifier.create(result)
                 .expectNextMatches(user -> user.getClass() == User.class)
                 .expectComplete()
                 .verify();
 
-        verify(repository, times(1)).findAndRemove(anyString());
+        verify(repository, times(1)).findAndRemove(anyString(), isNull());
+        verify(cache, times(1)).invalidate("123");
 
 
     }
@@ -129,6 +418,7 @@ class UserServiceTest {
         } catch (Exception ex) {
             assertEquals(ObjectNotFoundException.class, ex.getClass());
             assertEquals(format("Object not found. Id: %s, Type: %s", "123", User.class.getSimpleName()), ex.getMessage());
+            assertEquals(0, ex.getStackTrace().length);
 
 
         }
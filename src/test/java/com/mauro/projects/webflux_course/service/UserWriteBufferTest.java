@@ -0,0 +1,76 @@
+package com.mauro.projects.webflux_course.service;
+
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.entity.User;
+import com.mauro.projects.webflux_course.repository.ChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryChangeCounterRepository;
+import com.mauro.projects.webflux_course.repository.InMemoryUserRepository;
+import com.mauro.projects.webflux_course.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserWriteBufferTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InMemoryChangeCounterRepository changeCounter = new InMemoryChangeCounterRepository();
+    private UserWriteBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        buffer.destroy();
+    }
+
+    @Test
+    void testEachCallerGetsItsOwnResultFromOneBulkInsert() {
+        buffer = new UserWriteBuffer(new InMemoryUserRepository(), changeCounter, properties(10, 100), registry);
+
+        Mono<String> first = buffer.insert(user("a@mail.com")).map(User::getEmail);
+        Mono<String> duplicate = buffer.insert(user("a@mail.com")).map(User::getEmail)
+                .onErrorResume(DuplicateKeyException.class, ex -> Mono.just("duplicate"));
+        Mono<String> second = buffer.insert(user("b@mail.com")).map(User::getEmail);
+
+        StepVerifier.create(Flux.merge(first, duplicate, second).collectList())
+                .expectNextMatches(results -> results.containsAll(List.of("a@mail.com", "duplicate", "b@mail.com")))
+                .verifyComplete();
+
+        assertEquals(1, registry.get("users.write-behind.batch.size").summary().count());
+        assertEquals(1L, changeCounter.current(ChangeCounterRepository.USERS).block());
+    }
+
+    @Test
+    void testRejectWhenBufferIsFull() {
+        buffer = new UserWriteBuffer(new InMemoryUserRepository(), changeCounter, properties(10, 1), registry);
+
+        StepVerifier pending = StepVerifier.create(buffer.insert(user("a@mail.com")))
+                .expectNextCount(1).expectComplete().verifyLater();
+
+        StepVerifier.create(buffer.insert(user("b@mail.com")))
+                .expectError(ServiceUnavailableException.class)
+                .verify(Duration.ofSeconds(1));
+
+        pending.verify(Duration.ofSeconds(1));
+    }
+
+    private static UserProperties properties(int maxBatchSize, int maxPending) {
+        UserProperties properties = new UserProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setMaxBatchSize(maxBatchSize);
+        properties.getWriteBehind().setMaxPending(maxPending);
+        properties.getWriteBehind().setWindow(Duration.ofMillis(20));
+        return properties;
+    }
+
+    private static User user(String email) {
+        return User.builder().name("Valdir").email(email).password("hash").build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mauro.projects.webflux_course.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mauro.projects.webflux_course.config.MongoShards;
+import com.mauro.projects.webflux_course.config.UserProperties;
+import com.mauro.projects.webflux_course.mapper.UserMapperImpl;
+import com.mauro.projects.webflux_course.security.PasswordHasher;
+import com.mauro.projects.webflux_course.service.UserService;
+import com.mauro.projects.webflux_course.service.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WarmUpRunnerTest {
+
+    private final UserProperties properties = new UserProperties();
+    private final UserService service = mock(UserService.class);
+    private final PasswordHasher passwordHasher = mock(PasswordHasher.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<ReactiveMongoTemplate> mongoTemplate = mock(ObjectProvider.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<MongoShards> mongoShards = mock(ObjectProvider.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private WarmUpRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        properties.getRepository().setBackend(UserProperties.Repository.Backend.MEMORY);
+        properties.getWarmUp().setIterations(10);
+        properties.getWarmUp().setRepositoryCalls(3);
+
+        runner = new WarmUpRunner(
+                properties, service, new UserMapperImpl(), Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(), passwordHasher, mongoTemplate, mongoShards, registry
+        );
+    }
+
+    @Test
+    void testRunsEveryStepAndExportsTheDuration() {
+        when(passwordHasher.hash(anyString())).thenReturn(Mono.just("hashed"));
+        when(service.findById(anyString())).thenReturn(Mono.error(new ObjectNotFoundException("not found")));
+        when(service.existsByEmail(anyString())).thenReturn(Mono.just(false));
+
+        runner.run(new DefaultApplicationArguments());
+
+        verify(service, times(3)).findById(anyString());
+        verify(service, times(3)).existsByEmail("warm.up@mail.com");
+        assertTrue(registry.get("users.warmup.duration").timeGauge().value() >= 0);
+    }
+
+    @Test
+    void testFailingStepsDoNotBlockReadinessPastTheTimeout() {
+        properties.getWarmUp().setTimeout(Duration.ofMillis(200));
+        when(passwordHasher.hash(anyString())).thenThrow(new IllegalStateException("hasher is down"));
+        when(service.findById(anyString())).thenReturn(Mono.never());
+
+        final long start = System.nanoTime();
+        runner.run(new DefaultApplicationArguments());
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5_000);
+        verify(service, never()).existsByEmail(anyString());
+    }
+
+    @Test
+    void testDisabledWarmUpDoesNothing() {
+        properties.getWarmUp().setEnabled(false);
+
+        runner.run(new DefaultApplicationArguments());
+
+        verify(passwordHasher, never()).hash(anyString());
+        assertEquals(0, registry.get("users.warmup.duration").timeGauge().value());
+    }
+}
@@ -0,0 +1,104 @@
+package com.mauro.projects.webflux_course.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void testRejectsCallsOverTheLimitAndReleasesOnCancel() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, 0.2, now::get);
+
+        Disposable first = limiter.mono(Mono.never()).subscribe();
+        Disposable second = limiter.mono(Mono.never()).subscribe();
+
+        StepVerifier.create(limiter.mono(Mono.just(1)))
+                .expectError(AdaptiveConcurrencyLimiter.LimitExceededException.class)
+                .verify();
+
+        first.dispose();
+        second.dispose();
+        assertEquals(0, limiter.inFlight());
+        StepVerifier.create(limiter.mono(Mono.just(1))).expectNext(1).verifyComplete();
+    }
+
+    @Test
+    void testStreamsGiveTheirPermitBackAtTheFirstElement() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10, 2.0, 0.2, now::get);
+
+        Disposable stream = limiter.flux(Flux.concat(Mono.just(1), Mono.never())).subscribe();
+
+        assertEquals(0, limiter.inFlight());
+        StepVerifier.create(limiter.mono(Mono.just(1))).expectNext(1).verifyComplete();
+        stream.dispose();
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void testLimitGrowsAtBaselineLatencyAndShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100, 2.0, 0.2, now::get);
+        Disposable demand = holdPermits(limiter, 8);
+
+        call(limiter, Duration.ofMillis(1), 50);
+        final int grown = limiter.limit();
+        assertTrue(grown > 10, "limit should grow, was " + grown);
+
+        call(limiter, Duration.ofMillis(20), 50);
+        assertTrue(limiter.limit() < grown, "limit should shrink, was " + limiter.limit());
+
+        demand.dispose();
+    }
+
+    @Test
+    void testTimeoutsCutTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100, 2.0, 0.2, now::get);
+
+        StepVerifier.create(limiter.mono(Mono.error(new QueryTimeoutException("slow"))))
+                .expectError(QueryTimeoutException.class)
+                .verify();
+
+        assertEquals(9, limiter.limit());
+    }
+
+    @Test
+    void testCancellationPastTheDeadlineCutsTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100, 2.0, 0.2, now::get);
+
+        Disposable early = limiter.mono(Mono.never(), Duration.ofSeconds(2)).subscribe();
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        early.dispose();
+        assertEquals(10, limiter.limit());
+
+        Disposable late = limiter.mono(Mono.never(), Duration.ofSeconds(2)).subscribe();
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        late.dispose();
+        assertEquals(9, limiter.limit());
+    }
+
+    private Disposable holdPermits(AdaptiveConcurrencyLimiter limiter, int permits) {
+        return Mono.when(IntStream.range(0, permits)
+                .mapToObj(i -> limiter.mono(Mono.never()))
+                .toList()).subscribe();
+    }
+
+    private void call(AdaptiveConcurrencyLimiter limiter, Duration latency, int times) {
+        for (int i = 0; i < times; i++) {
+            limiter.mono(Mono.fromSupplier(() -> now.addAndGet(latency.toNanos())))
+                    .onErrorResume(AdaptiveConcurrencyLimiter.LimitExceededException.class, ex -> Mono.empty())
+                    .block();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.mauro.projects.webflux_course.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            10, 4, 0.5, Duration.ofSeconds(10), 2, QueryTimeoutException.class::isInstance, now::get
+    );
+
+    @Test
+    void testOpensWhenFailureRateReachesThresholdAndRejectsWithRetryAfter() {
+        call(Mono.just(1));
+        call(Mono.just(1));
+        call(Mono.error(new QueryTimeoutException("slow")));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        call(Mono.error(new QueryTimeoutException("slow")));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        now.addAndGet(Duration.ofSeconds(4).toNanos());
+        StepVerifier.create(breaker.mono(Mono.just(1)))
+                .expectErrorMatches(ex -> ex instanceof CircuitBreaker.CallNotPermittedException notPermitted
+                        && notPermitted.retryAfter().equals(Duration.ofSeconds(6)))
+                .verify();
+    }
+
+    @Test
+    void testHalfOpenClosesAfterSuccessfulTrialsAndReopensOnFailure() {
+        tripOpen();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        call(Mono.just(1));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        call(Mono.just(1));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        tripOpen();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        call(Mono.error(new QueryTimeoutException("slow")));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void testBusinessErrorsDoNotTripTheBreaker() {
+        for (int i = 0; i < 10; i++) {
+            call(Mono.error(new DuplicateKeyException("E11000")));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            call(Mono.error(new QueryTimeoutException("slow")));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private void call(Mono<Integer> source) {
+        breaker.mono(source).onErrorResume(ex -> Mono.empty()).block();
+    }
+}
@@ -0,0 +1,50 @@
+package com.mauro.projects.webflux_course.support;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private final List<String> ids = IntStream.range(0, 20_000).mapToObj(i -> new ObjectId().toHexString()).toList();
+
+    @Test
+    void testObjectIdsSpreadEvenly() {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(4), 160);
+
+        final Map<String, Integer> counts = new HashMap<>();
+        ids.forEach(id -> counts.merge(ring.nameFor(id), 1, Integer::sum));
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 3_500 && count < 6_500, "keys per node: " + counts));
+    }
+
+    @Test
+    void testAddingNodeOnlyMovesKeysToIt() {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(4), 160);
+        final ConsistentHashRing<String> grown = ring.with("shard-4", "shard-4");
+
+        long moved = 0;
+        for (String id : ids) {
+            if (!ring.nameFor(id).equals(grown.nameFor(id))) {
+                assertEquals("shard-4", grown.nameFor(id));
+                moved++;
+            }
+        }
+        assertTrue(moved > 2_800 && moved < 5_200, "moved: " + moved);
+    }
+
+    private static Map<String, String> nodes(final int count) {
+        final Map<String, String> nodes = new LinkedHashMap<>();
+        IntStream.range(0, count).forEach(i -> nodes.put("shard-" + i, "shard-" + i));
+        return nodes;
+    }
+}
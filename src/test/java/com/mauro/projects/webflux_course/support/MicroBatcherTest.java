@@ -0,0 +1,94 @@
+package com.mauro.projects.webflux_course.support;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private Mono<Void> upperCaseExceptMissing(List<MicroBatcher.Pending<String, String>> batch) {
+        batches.add(batch.stream().map(MicroBatcher.Pending::item).toList());
+        return Mono.fromRunnable(() -> batch.stream()
+                .filter(pending -> !pending.item().equals("missing"))
+                .forEach(pending -> pending.success(pending.item().toUpperCase())));
+    }
+
+    @Test
+    void testRequestsWithinWindowShareOneFlush() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>(10, Duration.ofMillis(50), this::upperCaseExceptMissing);
+
+        StepVerifier.create(Flux.merge(batcher.submit("a"), batcher.submit("b"), batcher.submit("c")).collectList())
+                .expectNextMatches(values -> values.containsAll(List.of("A", "B", "C")))
+                .verifyComplete();
+
+        assertEquals(1, batches.size());
+        assertEquals(0, batcher.pending());
+    }
+
+    @Test
+    void testFullBatchFlushesWithoutWaitingForWindow() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>(2, Duration.ofHours(1), this::upperCaseExceptMissing);
+
+        StepVerifier.create(Flux.merge(batcher.submit("a"), batcher.submit("b")).collectList())
+                .expectNextMatches(values -> values.size() == 2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(List.of(List.of("a", "b")), batches);
+    }
+
+    @Test
+    void testUnresolvedItemsCompleteEmpty() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>(10, Duration.ofMillis(5), this::upperCaseExceptMissing);
+
+        StepVerifier.create(batcher.submit("missing")).verifyComplete();
+    }
+
+    @Test
+    void testFlushErrorReachesEveryCaller() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>(10, Duration.ofMillis(5),
+                batch -> Mono.error(new IllegalStateException("boom")));
+
+        StepVerifier first = StepVerifier.create(batcher.submit("a")).expectError(IllegalStateException.class).verifyLater();
+        StepVerifier second = StepVerifier.create(batcher.submit("b")).expectError(IllegalStateException.class).verifyLater();
+
+        first.verify(Duration.ofSeconds(1));
+        second.verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testRejectBeyondMaxPending() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>(10, 1, Duration.ofMillis(20), this::upperCaseExceptMissing);
+
+        StepVerifier first = StepVerifier.create(batcher.submit("a")).expectNext("A").expectComplete().verifyLater();
+
+        StepVerifier.create(batcher.submit("b"))
+                .expectError(RejectedExecutionException.class)
+                .verify(Duration.ofSeconds(1));
+
+        first.verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testCloseFlushesPendingItems() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>(10, Duration.ofHours(1), this::upperCaseExceptMissing);
+
+        StepVerifier pending = StepVerifier.create(batcher.submit("a")).expectNext("A").expectComplete().verifyLater();
+
+        assertTrue(batcher.close(Duration.ofSeconds(1)));
+        pending.verify(Duration.ofSeconds(1));
+
+        StepVerifier.create(batcher.submit("b")).expectError(RejectedExecutionException.class).verify();
+    }
+}
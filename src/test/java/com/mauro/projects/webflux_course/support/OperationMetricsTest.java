@@ -0,0 +1,79 @@
+package com.mauro.projects.webflux_course.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OperationMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private OperationMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new OperationMetrics("test", registry);
+    }
+
+    @Test
+    void testRecordsOutcomeOfMono() {
+        StepVerifier.create(metrics.mono("find", Mono.just("value"))).expectNext("value").verifyComplete();
+        StepVerifier.create(metrics.mono("find", Mono.empty())).verifyComplete();
+
+        assertEquals(1, timerCount("find", "success", "none"));
+        assertEquals(1, timerCount("find", "empty", "none"));
+    }
+
+    @Test
+    void testRecordsErrorsByExceptionType() {
+        StepVerifier.create(metrics.mono("save", Mono.error(new IllegalStateException("boom"))))
+                .verifyError(IllegalStateException.class);
+
+        assertEquals(1, timerCount("save", "error", "IllegalStateException"));
+        assertEquals(1, registry.get("test.errors")
+                .tag("operation", "save")
+                .tag("exception", "IllegalStateException")
+                .counter().count());
+    }
+
+    @Test
+    void testRecordsEmittedElementsOfFlux() {
+        StepVerifier.create(metrics.flux("findAll", Flux.range(0, 3))).expectNextCount(3).verifyComplete();
+
+        assertEquals(1, timerCount("findAll", "success", "none"));
+        assertEquals(3.0, registry.get("test.elements").tag("operation", "findAll").summary().totalAmount());
+    }
+
+    @Test
+    void testTracksCallsInFlight() {
+        Sinks.One<String> upstream = Sinks.one();
+
+        StepVerifier pending = StepVerifier.create(metrics.mono("find", upstream.asMono()))
+                .expectNext("value").expectComplete().verifyLater();
+
+        assertEquals(1.0, inFlight("find"));
+
+        upstream.tryEmitValue("value");
+        pending.verify();
+
+        assertEquals(0.0, inFlight("find"));
+    }
+
+    private long timerCount(String operation, String outcome, String exception) {
+        return registry.get("test")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .timer().count();
+    }
+
+    private double inFlight(String operation) {
+        return registry.get("test.active").tag("operation", operation).gauge().value();
+    }
+}
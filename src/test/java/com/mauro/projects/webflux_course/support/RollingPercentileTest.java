@@ -0,0 +1,24 @@
+package com.mauro.projects.webflux_course.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollingPercentileTest {
+
+    @Test
+    void testPercentileOfTheMostRecentWindow() {
+        RollingPercentile p95 = new RollingPercentile(0.95, 100, 10);
+        assertEquals(-1, p95.value());
+
+        for (int i = 1; i <= 100; i++) {
+            p95.record(i);
+        }
+        assertEquals(95, p95.value());
+
+        for (int i = 0; i < 100; i++) {
+            p95.record(1000 + i);
+        }
+        assertEquals(1094, p95.value());
+    }
+}
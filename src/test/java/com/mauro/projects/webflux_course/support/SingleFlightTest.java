@@ -0,0 +1,106 @@
+package com.mauro.projects.webflux_course.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private SimpleMeterRegistry registry;
+    private SingleFlight<String, String> singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("test", registry);
+    }
+
+    @Test
+    void testConcurrentSubscribersShareOneCall() {
+        Sinks.One<String> upstream = Sinks.one();
+
+        StepVerifier first = StepVerifier.create(singleFlight.execute("1", key -> counted(upstream.asMono())))
+                .expectNext("value").expectComplete().verifyLater();
+        StepVerifier second = StepVerifier.create(singleFlight.execute("1", key -> counted(upstream.asMono())))
+                .expectNext("value").expectComplete().verifyLater();
+
+        upstream.tryEmitValue("value");
+
+        first.verify(Duration.ofSeconds(1));
+        second.verify(Duration.ofSeconds(1));
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.inFlight());
+        assertEquals(1.0, registry.get("singleflight.saved").counter().count());
+    }
+
+    @Test
+    void testEntryIsRemovedOnceResultArrives() {
+        StepVerifier.create(singleFlight.execute("1", key -> counted(Mono.just("a")))).expectNext("a").verifyComplete();
+        StepVerifier.create(singleFlight.execute("1", key -> counted(Mono.just("b")))).expectNext("b").verifyComplete();
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testErrorAndEmptyPropagateToEveryWaiter() {
+        Sinks.One<String> failing = Sinks.one();
+        StepVerifier first = StepVerifier.create(singleFlight.execute("1", key -> failing.asMono()))
+                .expectError(IllegalStateException.class).verifyLater();
+        StepVerifier second = StepVerifier.create(singleFlight.execute("1", key -> failing.asMono()))
+                .expectError(IllegalStateException.class).verifyLater();
+        failing.tryEmitError(new IllegalStateException());
+        first.verify(Duration.ofSeconds(1));
+        second.verify(Duration.ofSeconds(1));
+
+        Sinks.One<String> empty = Sinks.one();
+        StepVerifier third = StepVerifier.create(singleFlight.execute("2", key -> empty.asMono())).expectComplete().verifyLater();
+        StepVerifier fourth = StepVerifier.create(singleFlight.execute("2", key -> empty.asMono())).expectComplete().verifyLater();
+        empty.tryEmitEmpty();
+        third.verify(Duration.ofSeconds(1));
+        fourth.verify(Duration.ofSeconds(1));
+
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void testCancellationOnlyCancelsUpstreamWhenEveryWaiterLeaves() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Sinks.One<String> upstream = Sinks.one();
+        Mono<String> source = upstream.asMono().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = singleFlight.execute("1", key -> source).subscribe();
+        StepVerifier second = StepVerifier.create(singleFlight.execute("1", key -> source))
+                .expectNext("value").expectComplete().verifyLater();
+
+        first.dispose();
+        assertEquals(false, cancelled.get());
+
+        upstream.tryEmitValue("value");
+        second.verify(Duration.ofSeconds(1));
+
+        Disposable last = singleFlight.execute("2", key -> Mono.<String>never().doOnCancel(() -> cancelled.set(true))).subscribe();
+        last.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    private Mono<String> counted(Mono<String> mono) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return mono;
+        });
+    }
+}